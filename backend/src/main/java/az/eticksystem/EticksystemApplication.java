@@ -3,8 +3,10 @@ package az.eticksystem;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@EnableAsync // Включает @Async для EmailService
+@EnableAsync      // @Async-слушатели (SSE дашбордов)
+@EnableScheduling // Снятие просроченных броней мест
 @SpringBootApplication
 public class EticksystemApplication {
 
@@ -6,7 +6,9 @@ import az.eticksystem.auth.dto.RegisterRequest;
 import az.eticksystem.security.JwtService;
 import az.eticksystem.user.User;
 import az.eticksystem.user.UserRepository;
+import az.eticksystem.user.UserService;
 import az.eticksystem.utils.email.EmailService;
+import az.eticksystem.utils.email.EmailTemplates;
 import az.eticksystem.utils.otp.OtpCode;
 import az.eticksystem.utils.otp.OtpRepository;
 import jakarta.validation.Valid;
@@ -33,9 +35,11 @@ public class AuthController {
     private final AuthService       authService;
     private final OtpRepository     otpRepository;
     private final EmailService      emailService;
+    private final EmailTemplates    emailTemplates;
     private final JwtService        jwtService;
     private final UserDetailsService userDetailsService;
     private final UserRepository    userRepository;
+    private final UserService       userService;
     private final PasswordEncoder   passwordEncoder;
 
     // Криптографически безопасный генератор — в отличие от new Random()
@@ -93,10 +97,9 @@ public class AuthController {
         otpRepository.save(otp);
         log.info("OTP requested for email: {} type: {}", email, type);
 
+        // locale — язык интерфейса, из которого запрошен код; нет шаблона на этом языке — az
         emailService.sendSimpleMessage(email,
-                "eticksystem: Təsdiqləmə kodu",
-                buildOtpEmailHtml(code)
-        );
+                emailTemplates.render("otp", (String) request.get("locale"), Map.of("code", code)));
 
         return ResponseEntity.ok(Map.of("message", "Sent"));
     }
@@ -164,13 +167,9 @@ public class AuthController {
                         return ResponseEntity.badRequest().body("Kod yanlışdır və ya vaxtı bitib");
                     }
 
-                    User user = userRepository.findByEmail(email)
-                            .orElseThrow(() -> new RuntimeException("User not found: " + email));
-
-                    user.setPassword(passwordEncoder.encode(newPassword));
-                    userRepository.save(user);
+                    // Новый пароль отзывает все старые токены — атомарным $inc tokenVersion
+                    userService.resetPassword(email, passwordEncoder.encode(newPassword));
                     otpRepository.deleteById(email);
-                    log.info("Password reset for user: {}", email);
 
                     UserDetails userDetails = userDetailsService.loadUserByUsername(email);
                     String token = jwtService.generateToken(userDetails);
@@ -178,21 +177,4 @@ public class AuthController {
                 })
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body("Kod tapılmadı"));
     }
-
-    // ── Helpers ──────────────────────────────────────────────────────────
-    private String buildOtpEmailHtml(String code) {
-        return """
-            <div style="font-family:sans-serif;text-align:center;padding:40px 20px;background:#f5f5f5;">
-              <div style="max-width:480px;margin:0 auto;background:#fff;border-radius:16px;padding:40px;box-shadow:0 4px 24px rgba(0,0,0,0.08);">
-                <h2 style="color:#111;margin-bottom:8px;">eticksystem</h2>
-                <p style="color:#555;font-size:16px;margin-bottom:24px;">Sizin təsdiqləmə kodunuz:</p>
-                <div style="background:#f0f4ff;border-radius:12px;padding:20px;margin-bottom:24px;">
-                  <span style="color:#2563eb;letter-spacing:10px;font-size:36px;font-weight:bold;">%s</span>
-                </div>
-                <p style="color:#999;font-size:13px;">Kod 5 dəqiqə ərzində etibarlıdır.</p>
-                <p style="color:#ccc;font-size:11px;margin-top:24px;">Bu məktubu siz tələb etməmisinizsə, nəzərə almayın.</p>
-              </div>
-            </div>
-            """.formatted(code);
-    }
-}
\ No newline at end of file
+}
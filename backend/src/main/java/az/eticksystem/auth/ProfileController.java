@@ -23,4 +23,11 @@ public class ProfileController {
     public ResponseEntity<?> updateProfile(@RequestBody ProfileRequest request, Authentication auth) {
         return ResponseEntity.ok(userService.updateProfile(auth.getName(), request));
     }
+
+    // Выход со всех устройств — все ранее выданные токены перестают приниматься
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutAll(Authentication auth) {
+        userService.revokeTokens(auth.getName());
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package az.eticksystem.config;
 
 import az.eticksystem.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -45,6 +46,8 @@ public class SecurityConfig {
                 .sessionManagement(session ->
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Повторный async-dispatch стриминговых ответов (SSE, манифест) — запрос уже авторизован
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers("/error").permitAll()
 
@@ -56,19 +59,23 @@ public class SecurityConfig {
 
                         // Публичная страница ивента
                         .requestMatchers(HttpMethod.GET, "/api/v1/events/s/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/v1/events/*/availability").permitAll()
 
                         // Создание заказа — публичное (покупка без аккаунта)
                         .requestMatchers(HttpMethod.POST, "/api/v1/orders/create").permitAll()
 
+                        // Бронь мест на время оформления — тоже без аккаунта
+                        .requestMatchers("/api/v1/orders/hold", "/api/v1/orders/hold/*").permitAll()
+
                         // Валидация промокода — публичная
                         .requestMatchers(HttpMethod.GET, "/api/v1/promocodes/validate").permitAll()
 
-                        // Отправка билета на email — публичная (вызывается после оплаты)
-                        .requestMatchers(HttpMethod.POST, "/api/v1/email/send-ticket").permitAll()
-
                         // Генерация PDF — публичная
                         .requestMatchers("/api/v1/tickets/generate-pdf").permitAll()
 
+                        // Готовые билеты заказа — покупатель без аккаунта, доступ по коду билета
+                        .requestMatchers(HttpMethod.GET, "/api/v1/tickets/orders/*/pdf").permitAll()
+
                         // Всё остальное — только авторизованным
                         .anyRequest().authenticated()
                 )
@@ -86,7 +93,8 @@ public class SecurityConfig {
         config.setAllowedOrigins(origins);
 
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type"));
+        config.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type", "X-Hold-Secret"));
+        config.setExposedHeaders(List.of("X-Next-Cursor")); // курсор следующей страницы all-orders
         config.setAllowCredentials(true);
         config.setMaxAge(3600L); // браузер кеширует preflight на 1 час
 
@@ -0,0 +1,20 @@
+package az.eticksystem.event;
+
+import java.util.Map;
+
+/**
+ * Инкрементальное изменение для живых дашбордов организатора (DashboardStreamService).
+ * Публикуется через ApplicationEventPublisher; data — только дельта, не пересчитанная статистика.
+ */
+public record DashboardEvent(Type type, String eventId, Map<String, Object> data) {
+
+    public enum Type {
+        ORDER_CREATED,   // tickets, amount, orderId, customer, email, date
+        SEATS_BOOKED,    // организатор занял места: seatIds, tickets
+        SEATS_UNBOOKED,  // организатор освободил места: seatIds
+        SEATS_RELEASED,  // истекла/отменена бронь: seatIds
+        TICKET_SCANNED,  // count, seatId?, gateId
+        VIEW,            // просмотр публичной страницы
+        REPORT_PROGRESS  // фоновый отчёт: jobId, status, progress
+    }
+}
@@ -0,0 +1,142 @@
+package az.eticksystem.event;
+
+import az.eticksystem.order.SeatsReleasedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Push-канал для дашбордов (SSE) вместо опроса /statistics и /stats/global.
+ * Сервисы публикуют DashboardEvent в шину Spring, здесь событие рассылается
+ * подписчикам конкретного ивента и общему дашборду его организатора.
+ * Клиент берёт снимок статистики один раз, дальше только применяет дельты.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardStreamService {
+
+    private static final long TIMEOUT_MS = 30 * 60 * 1000L; // клиент переподключается сам
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ConcurrentMap<String, Set<SseEmitter>> byEvent     = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<SseEmitter>> byOrganizer = new ConcurrentHashMap<>();
+
+    // Владелец ивента не меняется — один запрос на ивент за время жизни процесса
+    private final ConcurrentMap<String, String> organizers = new ConcurrentHashMap<>();
+
+    // ── Subscribe ─────────────────────────────────────────────────────────
+
+    /** Права на ивент проверяет вызывающий (EventService). */
+    public SseEmitter subscribeEvent(String eventId) {
+        return register(byEvent, eventId);
+    }
+
+    public SseEmitter subscribeOrganizer(String organizerEmail) {
+        return register(byOrganizer, organizerEmail);
+    }
+
+    // ── Publish ───────────────────────────────────────────────────────────
+
+    @Async
+    @EventListener
+    public void on(DashboardEvent event) {
+        Set<SseEmitter> eventSubs = byEvent.get(event.eventId());
+        String organizer = organizerOf(event.eventId());
+        Set<SseEmitter> orgSubs = organizer != null ? byOrganizer.get(organizer) : null;
+        if ((eventSubs == null || eventSubs.isEmpty()) && (orgSubs == null || orgSubs.isEmpty())) return;
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("eventId", event.eventId());
+        if (event.data() != null) payload.putAll(event.data());
+
+        send(eventSubs, event.type().name(), payload);
+        send(orgSubs,   event.type().name(), payload);
+    }
+
+    @Async
+    @EventListener
+    public void on(SeatsReleasedEvent event) {
+        on(new DashboardEvent(DashboardEvent.Type.SEATS_RELEASED, event.eventId(),
+                Map.of("seatIds", event.seatIds())));
+    }
+
+    // Прокси и балансировщики рвут «молчащие» соединения — раз в 20 секунд шлём комментарий
+    @Scheduled(fixedDelay = 20_000)
+    public void heartbeat() {
+        byEvent.values().forEach(this::ping);
+        byOrganizer.values().forEach(this::ping);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private SseEmitter register(ConcurrentMap<String, Set<SseEmitter>> registry, String key) {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MS);
+        Set<SseEmitter> subs = registry.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+        subs.add(emitter);
+
+        // Пустой набор ключа оставляем — иначе гонка с параллельной подпиской
+        Runnable remove = () -> subs.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        try {
+            emitter.send(SseEmitter.event().name("READY").data(Map.of("key", key)));
+        } catch (IOException e) {
+            remove.run();
+        }
+        return emitter;
+    }
+
+    private void send(Set<SseEmitter> subs, String name, Object payload) {
+        if (subs == null) return;
+        for (SseEmitter emitter : subs) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(payload));
+            } catch (IOException | IllegalStateException e) {
+                // Клиент ушёл — onError/onCompletion уберут эмиттер из реестра
+                subs.remove(emitter);
+            }
+        }
+    }
+
+    private void ping(Set<SseEmitter> subs) {
+        for (SseEmitter emitter : subs) {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                subs.remove(emitter);
+            }
+        }
+    }
+
+    private String organizerOf(String eventId) {
+        if (eventId == null) return null;
+        String cached = organizers.get(eventId);
+        if (cached != null) return cached;
+
+        Query query = Query.query(Criteria.where("_id").is(eventId));
+        query.fields().include("organizerId");
+        Event event = mongoTemplate.findOne(query, Event.class);
+        if (event == null || event.getOrganizerId() == null) return null;
+
+        organizers.put(eventId, event.getOrganizerId());
+        return event.getOrganizerId();
+    }
+}
@@ -2,6 +2,7 @@ package az.eticksystem.event;
 
 import az.eticksystem.event.dto.BuyerQuestion;
 import az.eticksystem.event.dto.FaqItem;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,7 +18,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -53,9 +56,46 @@ public class Event {
 
     private Boolean isReservedSeating;
 
+    // ── Хранятся отдельно (event_layouts / event_designs / event_inventory) ──
+    // В коллекцию events не пишутся — EventStorageService подставляет их перед отдачей на фронт
+
+    @Transient
     @Builder.Default
     private List<Seat> seats = new ArrayList<>();
 
+    @Transient
+    private Object seatMapConfig;
+
+    @Transient
+    private Object ticketDesign;
+
+    @Transient
+    private Integer sold;
+
+    @Transient
+    private Integer views;
+
+    /** Продано по категориям: tierId → количество */
+    @Transient
+    private Map<String, Integer> tierSold;
+
+    /** Сколько билетов каждой категории ещё можно купить (только GA) */
+    @Transient
+    private Map<String, Integer> tierRemaining;
+
+    /** Занятые места схемы зала: бит SeatGrid.indexOf(seatId) в массиве long */
+    @Transient
+    @JsonIgnore
+    private List<Long> soldSeatWords;
+
+    @Transient
+    @JsonIgnore
+    private List<Long> adminSeatWords;
+
+    /** Текущие версии неизменяемых документов схемы зала и дизайна билета */
+    private Integer layoutVersion;
+    private Integer designVersion;
+
     private Integer    totalCapacity;
     private BigDecimal platformFee;
     private String     shortLink;
@@ -69,22 +109,16 @@ public class Event {
 
     private boolean deleted = false;
 
-    private Object seatMapConfig;
-    private Object ticketDesign;
-
     private List<BuyerQuestion> buyerQuestions;
     private Integer             maxTicketsPerOrder;
 
-    @Builder.Default
-    private List<String> soldSeats = new ArrayList<>();
-    private Integer sold = 0;
+    /** Начало и ширина сетки — фронт по ним переводит биты обратно в "row_col" */
+    private Integer seatGridMinRow;
+    private Integer seatGridMinCol;
+    private Integer seatGridCols;
 
     private String streamUrl;
     private String streamPassword;
-    private Integer views;
-
-    @Builder.Default
-    private List<String> adminSeats = new ArrayList<>();
 
     /** FAQ — questions and answers shown as accordion on the public event page */
     @Builder.Default
@@ -96,4 +130,12 @@ public class Event {
 
     @Transient
     private String organizerCompanyPhone;
+
+    // В JSON места уходят компактно: base64 битовой маски вместо списка строк
+    public String getSoldSeatBits()  { return encodeBits(soldSeatWords); }
+    public String getAdminSeatBits() { return encodeBits(adminSeatWords); }
+
+    private static String encodeBits(List<Long> words) {
+        return words == null ? null : Base64.getEncoder().encodeToString(SeatGrid.bits(words).toByteArray());
+    }
 }
\ No newline at end of file
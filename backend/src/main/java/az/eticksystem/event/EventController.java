@@ -3,15 +3,19 @@ package az.eticksystem.event;
 import az.eticksystem.event.dto.CreateEventRequest;
 import az.eticksystem.event.dto.EventStatsResponse;
 import az.eticksystem.event.dto.GlobalStatsResponse;
+import az.eticksystem.event.dto.OrderSummaryPage;
 import az.eticksystem.event.dto.UpdateEventRequest;
 import az.eticksystem.order.Order;
+import az.eticksystem.order.OrderCursor;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -22,6 +26,8 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class EventController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final EventService eventService;
 
     @PostMapping
@@ -66,6 +72,24 @@ public class EventController {
         return ResponseEntity.ok(eventService.getEventById(id));
     }
 
+    /** Остатки билетов по категориям (GA) — публичный, дешёвый запрос для страницы покупки. */
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<Map<String, Integer>> getAvailability(@PathVariable String id) {
+        return ResponseEntity.ok(eventService.getTierAvailability(id));
+    }
+
+    /** SSE: дельты статистики ивента (заказы, сканы, брони, просмотры) вместо опроса /statistics. */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvent(@PathVariable String id, Authentication authentication) {
+        return eventService.streamEvent(id, authentication.getName());
+    }
+
+    /** SSE: дельты по всем ивентам организатора для общего дашборда. */
+    @GetMapping(value = "/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamGlobal(Authentication authentication) {
+        return eventService.streamGlobal(authentication.getName());
+    }
+
     @GetMapping("/{id}/statistics")
     public ResponseEntity<EventStatsResponse> getEventStatistics(
             @PathVariable String id,
@@ -73,11 +97,27 @@ public class EventController {
         return ResponseEntity.ok(eventService.getEventStatistics(id, authentication.getName()));
     }
 
+    /** Заказы ивента страницами (keyset) — продолжение recentOrders из /statistics. */
+    @GetMapping("/{id}/orders")
+    public ResponseEntity<OrderSummaryPage> getEventOrders(
+            @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            Authentication authentication) {
+        return ResponseEntity.ok(eventService.getEventOrders(id, authentication.getName(), cursor, limit));
+    }
+
     @GetMapping("/{eventId}/all-orders")
     public ResponseEntity<List<Order>> getAllOrders(
             @PathVariable String eventId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "500") int limit,
             Authentication authentication) {
-        return ResponseEntity.ok(eventService.getAllEventOrders(eventId, authentication.getName()));
+        // Тело — прежний массив заказов; курсор следующей страницы — в заголовке
+        OrderCursor.Page page = eventService.getAllEventOrders(eventId, authentication.getName(), cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        return response.body(page.orders());
     }
 
     @GetMapping("/stats/global")
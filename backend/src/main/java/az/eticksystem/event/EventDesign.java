@@ -0,0 +1,35 @@
+package az.eticksystem.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Дизайн билета ивента — неизменяемая версия.
+ * Новый дизайн = новая версия; по (eventId, version) можно кешировать отрисованные билеты.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "event_designs")
+public class EventDesign {
+
+    @Id
+    private String id; // eventId:version
+
+    private String  eventId;
+    private Integer version;
+    private Object  ticketDesign;
+
+    private LocalDateTime createdAt;
+
+    public static String idOf(String eventId, int version) {
+        return eventId + ":" + version;
+    }
+}
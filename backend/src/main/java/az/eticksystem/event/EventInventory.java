@@ -0,0 +1,40 @@
+package az.eticksystem.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Горячее изменяемое состояние ивента: счётчики и занятые места.
+ * Маленький документ (id = eventId) — каждая покупка пишет только сюда,
+ * а не перезаписывает весь Event со схемой зала и дизайном.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "event_inventory")
+public class EventInventory {
+
+    @Id
+    private String id; // = eventId
+
+    private int sold;
+    private int views;
+
+    /** Продано по категориям: tierId → количество */
+    private Map<String, Integer> tierSold;
+
+    /** Остаток по категориям для GA-ивентов (TierInventoryService); у схемы зала — null */
+    private Map<String, Integer> tierRemaining;
+
+    /** Занятые места схемы зала: бит SeatGrid.indexOf(seatId) в массиве long */
+    private List<Long> soldSeatWords;
+    private List<Long> adminSeatWords;
+}
@@ -0,0 +1,40 @@
+package az.eticksystem.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Схема зала ивента — неизменяемая версия.
+ * Меняется схема — пишется новая версия, а Event.layoutVersion переключается на неё.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "event_layouts")
+public class EventLayout {
+
+    @Id
+    private String id; // eventId:version
+
+    private String  eventId;
+    private Integer version;
+
+    @Builder.Default
+    private List<Seat> seats = new ArrayList<>();
+    private Object     seatMapConfig;
+
+    private LocalDateTime createdAt;
+
+    public static String idOf(String eventId, int version) {
+        return eventId + ":" + version;
+    }
+}
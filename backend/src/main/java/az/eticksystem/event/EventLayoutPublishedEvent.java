@@ -0,0 +1,4 @@
+package az.eticksystem.event;
+
+/** Публикуется, когда Event.layoutVersion переключается на новую схему зала (в том числе миграцией). */
+public record EventLayoutPublishedEvent(String eventId, int version) {}
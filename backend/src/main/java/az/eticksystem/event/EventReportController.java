@@ -1,15 +1,26 @@
 package az.eticksystem.event;
 
+import az.eticksystem.utils.OrderExportService;
 import az.eticksystem.utils.PdfReportService;
+import az.eticksystem.utils.ReportJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Locale;
 
 @Slf4j
 @RestController
@@ -17,17 +28,93 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class EventReportController {
 
-    private final PdfReportService pdfReportService;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv; charset=UTF-8");
+    private static final MediaType XLSX     = MediaType.parseMediaType(
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    private final PdfReportService   pdfReportService;
+    private final OrderExportService orderExportService;
+    private final ReportJobService   reportJobService;
 
+    /** PDF-отчёт потоком: строки таблицы уходят клиенту по мере чтения заказов. */
     @GetMapping("/{eventId}/report/pdf")
-    public ResponseEntity<byte[]> downloadPdfReport(@PathVariable String eventId) {
+    public ResponseEntity<StreamingResponseBody> downloadPdfReport(
+            @PathVariable String eventId,
+            Authentication authentication) {
         log.info("PDF report requested for event: {}", eventId);
-        byte[] pdfBytes = pdfReportService.generateEventReport(eventId);
+        Event event = pdfReportService.checkAccess(eventId, authentication.getName());
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION,
                         "attachment; filename=report_" + eventId + ".pdf")
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
                 .contentType(MediaType.APPLICATION_PDF)
-                .body(pdfBytes);
+                .body(out -> pdfReportService.writeEventReport(event, out));
+    }
+
+    /** Все заказы ивента в CSV или XLSX — потоком из курсора Mongo, без сборки в памяти. */
+    @GetMapping("/{eventId}/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @PathVariable String eventId,
+            @RequestParam(defaultValue = "csv") String format,
+            Authentication authentication) {
+        OrderExportService.Format fmt = "xlsx".equalsIgnoreCase(format)
+                ? OrderExportService.Format.XLSX : OrderExportService.Format.CSV;
+        orderExportService.checkAccess(eventId, authentication.getName());
+        log.info("Order export requested: event={} format={}", eventId, fmt);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=orders_" + eventId + "." + fmt.name().toLowerCase(Locale.ROOT))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .contentType(fmt == OrderExportService.Format.XLSX ? XLSX : TEXT_CSV)
+                .body(out -> orderExportService.write(eventId, fmt, out));
+    }
+
+    // ── Фоновые отчёты ────────────────────────────────────────────────────
+
+    /** Ставит отчёт в очередь (или сразу отдаёт готовый из кэша): format = pdf | csv | xlsx. */
+    @PostMapping("/{eventId}/reports")
+    public ResponseEntity<ReportJobService.JobView> submitReport(
+            @PathVariable String eventId,
+            @RequestParam(defaultValue = "pdf") String format,
+            Authentication authentication) {
+        ReportJobService.Format fmt = switch (format.toLowerCase(Locale.ROOT)) {
+            case "csv"  -> ReportJobService.Format.CSV;
+            case "xlsx" -> ReportJobService.Format.XLSX;
+            default     -> ReportJobService.Format.PDF;
+        };
+        Event event = pdfReportService.checkAccess(eventId, authentication.getName());
+        ReportJobService.JobView job = reportJobService.submit(event, fmt, authentication.getName());
+        return ResponseEntity.status(job.status() == ReportJobService.Status.DONE ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                .body(job);
+    }
+
+    @GetMapping("/{eventId}/reports/{jobId}")
+    public ResponseEntity<ReportJobService.JobView> reportStatus(
+            @PathVariable String eventId,
+            @PathVariable String jobId,
+            Authentication authentication) {
+        return ResponseEntity.ok(reportJobService.status(eventId, jobId, authentication.getName()));
+    }
+
+    @GetMapping("/{eventId}/reports/{jobId}/download")
+    public ResponseEntity<Resource> downloadReport(
+            @PathVariable String eventId,
+            @PathVariable String jobId,
+            Authentication authentication) {
+        ReportJobService.JobView job = reportJobService.status(eventId, jobId, authentication.getName());
+        Resource file = new FileSystemResource(reportJobService.result(eventId, jobId, authentication.getName()));
+
+        MediaType type = switch (job.format()) {
+            case PDF  -> MediaType.APPLICATION_PDF;
+            case CSV  -> TEXT_CSV;
+            case XLSX -> XLSX;
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=" + ReportJobService.fileName(eventId, job.format()))
+                .contentType(type)
+                .body(file);
     }
-}
\ No newline at end of file
+}
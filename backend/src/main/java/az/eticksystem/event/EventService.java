@@ -2,17 +2,24 @@ package az.eticksystem.event;
 
 import az.eticksystem.event.dto.*;
 import az.eticksystem.order.Order;
+import az.eticksystem.order.OrderCursor;
 import az.eticksystem.order.OrderRepository;
 import az.eticksystem.user.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -21,15 +28,21 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class EventService {
 
-    private static final DateTimeFormatter CHART_FMT = DateTimeFormatter.ofPattern("dd/MM");
-    private static final DateTimeFormatter ORDER_FMT  = DateTimeFormatter.ofPattern("dd.MM.yyyy, HH:mm");
-
-    // Статусы успешных заказов в одном месте — DRY
-    private static final Set<String> SUCCESS_STATUSES = Set.of("SUCCESS", "Ödənilib");
-
-    private final EventRepository eventRepository;
-    private final OrderRepository orderRepository;
-    private final UserRepository  userRepository;
+    private static final int MAX_PAGE_SIZE     = 200;
+    private static final int MAX_RAW_PAGE_SIZE = 1000;
+
+    private final EventRepository           eventRepository;
+    private final OrderRepository           orderRepository;
+    private final UserRepository            userRepository;
+    private final SeatClaimService          seatClaimService;
+    private final EventStorageService       eventStorageService;
+    private final TierInventoryService      tierInventoryService;
+    private final SalesCounterService       salesCounterService;
+    private final SalesRollupService        salesRollupService;
+    private final EventStatsCache           eventStatsCache;
+    private final DashboardStreamService    dashboardStreamService;
+    private final MongoTemplate             mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ── Create ────────────────────────────────────────────────────────────
 
@@ -87,15 +100,13 @@ public class EventService {
                 .shortLink(shortLink)
                 .status("PUBLISHED")
                 .deleted(false)
-                .views(0)
-                .soldSeats(new ArrayList<>())
-                .adminSeats(new ArrayList<>())
                 .build();
 
         event.setStreamUrl(request.getStreamUrl());
         event.setStreamPassword(request.getStreamPassword());
 
-        Event saved = eventRepository.save(event);
+        // Схема зала, дизайн и состояние продаж уходят в свои коллекции
+        Event saved = eventStorageService.create(event);
         log.info("Event created: id={} title='{}' organizer={}", saved.getId(), saved.getTitle(), organizerEmail);
         return saved;
     }
@@ -106,23 +117,35 @@ public class EventService {
         Event event = findEventOrThrow(eventId);
         checkOwnership(event, organizerEmail);
 
-        if (request.getTitle()             != null) event.setTitle(request.getTitle());
-        if (request.getDescription()       != null) event.setDescription(request.getDescription());
-        if (request.getCategory()          != null) event.setCategory(request.getCategory());
-        if (request.getEventDate()         != null) event.setEventDate(request.getEventDate());
-        if (request.getStartTime()         != null) event.setStartTime(request.getStartTime());
-        if (request.getEndTime()           != null) event.setEndTime(request.getEndTime());
-        if (request.getIsPhysical()        != null) event.setIsPhysical(request.getIsPhysical());
-        if (request.getVenueName()         != null) event.setVenueName(request.getVenueName());
-        if (request.getAddress()           != null) event.setAddress(request.getAddress());
-        if (request.getIsPrivate()         != null) event.setIsPrivate(request.getIsPrivate());
-        if (request.getAgeRestriction()    != null) event.setAgeRestriction(request.getAgeRestriction());
-        if (request.getMaxTicketsPerOrder()!= null) event.setMaxTicketsPerOrder(request.getMaxTicketsPerOrder());
-        if (request.getCoverImageUrl()     != null) event.setCoverImageUrl(request.getCoverImageUrl());
-        if (request.getStatus()            != null) event.setStatus(request.getStatus());
-        if (request.getFaq() != null)               event.setFaq(request.getFaq());
-
-        return eventRepository.save(event);
+        // Точечный $set только изменённых полей — схему зала и продажи не перезаписываем
+        Update update = new Update();
+        setIfPresent(update, "title",              request.getTitle());
+        setIfPresent(update, "description",        request.getDescription());
+        setIfPresent(update, "category",           request.getCategory());
+        setIfPresent(update, "eventDate",          request.getEventDate());
+        setIfPresent(update, "startTime",          request.getStartTime());
+        setIfPresent(update, "endTime",            request.getEndTime());
+        setIfPresent(update, "isPhysical",         request.getIsPhysical());
+        setIfPresent(update, "venueName",          request.getVenueName());
+        setIfPresent(update, "address",            request.getAddress());
+        setIfPresent(update, "isPrivate",          request.getIsPrivate());
+        setIfPresent(update, "ageRestriction",     request.getAgeRestriction());
+        setIfPresent(update, "maxTicketsPerOrder", request.getMaxTicketsPerOrder());
+        setIfPresent(update, "coverImageUrl",      request.getCoverImageUrl());
+        setIfPresent(update, "status",             request.getStatus());
+        setIfPresent(update, "faq",                request.getFaq());
+
+        if (!update.getUpdateObject().isEmpty()) {
+            update.set("updatedAt", LocalDateTime.now());
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(eventId)), update, Event.class);
+        }
+
+        // Новый дизайн билета — новая неизменяемая версия
+        if (request.getTicketDesign() != null) {
+            eventStorageService.publishDesign(event, request.getTicketDesign());
+        }
+
+        return eventStorageService.withDetails(findEventOrThrow(eventId));
     }
 
     // ── Delete (soft) ─────────────────────────────────────────────────────
@@ -130,19 +153,23 @@ public class EventService {
     public void deleteEvent(String eventId, String organizerEmail) {
         Event event = findEventOrThrow(eventId);
         checkOwnership(event, organizerEmail);
-        event.setDeleted(true);
-        eventRepository.save(event);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(eventId)),
+                new Update().set("deleted", true).set("updatedAt", LocalDateTime.now()), Event.class);
         log.info("Event soft-deleted: id={} by={}", eventId, organizerEmail);
     }
 
     // ── Read ──────────────────────────────────────────────────────────────
 
+    public Map<String, Integer> getTierAvailability(String eventId) {
+        return tierInventoryService.remaining(eventId);
+    }
+
     public Event getEventById(String id) {
-        return findEventOrThrow(id);
+        return eventStorageService.withDetails(findEventOrThrow(id));
     }
 
     public List<Event> getEventsByOrganizer(String organizerEmail) {
-        return eventRepository.findByOrganizerIdAndDeletedFalse(organizerEmail);
+        return eventStorageService.withDetails(eventRepository.findByOrganizerIdAndDeletedFalse(organizerEmail));
     }
 
     public Event getEventByShortLink(String shortLink) {
@@ -157,13 +184,34 @@ public class EventService {
             event.setOrganizerCompanyPhone(user.getPhone());
         });
 
-        return event;
+        // Просмотр публичной страницы — счётчик в памяти, без записи в базу на каждый запрос
+        salesCounterService.addView(event.getId());
+        eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.VIEW, event.getId(), Map.of()));
+
+        return eventStorageService.withDetails(event);
     }
 
-    public List<Order> getAllEventOrders(String eventId, String organizerEmail) {
+    /** Полные заказы ивента (с билетами) страницами — список больше не грузится целиком. */
+    public OrderCursor.Page getAllEventOrders(String eventId, String organizerEmail, String cursor, int limit) {
         Event event = findEventOrThrow(eventId);
         checkOwnership(event, organizerEmail);
-        return orderRepository.findByEventIdOrderByCreatedAtDesc(eventId);
+        int size = Math.max(1, Math.min(limit, MAX_RAW_PAGE_SIZE));
+
+        List<Order> orders = mongoTemplate.find(
+                OrderCursor.pageQuery(Criteria.where("eventId").is(eventId), cursor, size), Order.class);
+        String next = OrderCursor.trim(orders, size);
+        return new OrderCursor.Page(orders, next);
+    }
+
+    // ── Live stream ───────────────────────────────────────────────────────
+
+    public SseEmitter streamEvent(String eventId, String organizerEmail) {
+        checkOwnership(findEventOrThrow(eventId), organizerEmail);
+        return dashboardStreamService.subscribeEvent(eventId);
+    }
+
+    public SseEmitter streamGlobal(String organizerEmail) {
+        return dashboardStreamService.subscribeOrganizer(organizerEmail);
     }
 
     // ── Statistics ────────────────────────────────────────────────────────
@@ -171,55 +219,48 @@ public class EventService {
     public EventStatsResponse getEventStatistics(String eventId, String organizerEmail) {
         Event event = findEventOrThrow(eventId);
         checkOwnership(event, organizerEmail);
+        eventStorageService.withInventory(event);
 
-        List<Order> orders = orderRepository.findByEventIdOrderByCreatedAtDesc(eventId);
-        List<Order> successOrders = filterSuccess(orders);
-
-        double totalRevenue    = successOrders.stream().mapToDouble(Order::getTotalAmount).sum();
-        int    realSoldTickets = successOrders.stream().mapToInt(o -> seatCount(o)).sum();
-        int    currentViews    = event.getViews() != null ? event.getViews() : 0;
-        double conversion      = currentViews > 0 ? ((double) realSoldTickets / currentViews) * 100 : 0.0;
-
-        List<SalesHistoryData> history = buildSalesHistory(successOrders);
-
-        List<EventStatsResponse.OrderSummary> recentOrders = orders.stream()
-                .map(o -> {
-                    EventStatsResponse.OrderSummary s = new EventStatsResponse.OrderSummary();
-                    s.setId(o.getId().substring(Math.max(0, o.getId().length() - 6)).toUpperCase());
-                    s.setCustomer(o.getCustomerName());
-                    s.setEmail(o.getCustomerEmail());
-                    s.setCustomerPhone(o.getCustomerPhone() != null ? o.getCustomerPhone() : "-");
-                    s.setType(String.valueOf(seatCount(o)));
-                    s.setAmount(o.getTotalAmount());
-                    s.setOriginalAmount(o.getOriginalAmount());
-                    s.setPromoCode(o.getPromoCode());
-                    s.setDate(o.getCreatedAt() != null ? o.getCreatedAt().format(ORDER_FMT) : "Bu gün");
-                    s.setStatus("success");
-                    return s;
-                })
-                .collect(Collectors.toList());
+        // Выручка, продажи, график и последние заказы — из снимка в памяти, без чтения всех заказов
+        EventStatsCache.View stats = eventStatsCache.view(eventId);
+        int    currentViews = event.getViews() != null ? event.getViews() : 0;
+        double conversion   = currentViews > 0 ? ((double) stats.sold() / currentViews) * 100 : 0.0;
 
         EventStatsResponse response = new EventStatsResponse();
-        response.setRevenue(totalRevenue);
-        response.setSold(realSoldTickets);
+        response.setRevenue(stats.revenue());
+        response.setSold(stats.sold());
         response.setTotal(event.getTotalCapacity() != null ? event.getTotalCapacity() : 100);
         response.setViews(currentViews);
         response.setConversionRate(Math.round(conversion * 10.0) / 10.0);
-        response.setRecentOrders(recentOrders);
-        response.setSalesHistory(history);
-        response.setAdminSeats(event.getAdminSeats() != null ? event.getAdminSeats() : new ArrayList<>());
+        response.setScanned(stats.scanned());
+        response.setRecentOrders(stats.recentOrders());
+        response.setRecentOrdersCursor(stats.recentOrdersCursor());
+        response.setSalesHistory(stats.salesHistory());
+        response.setAdminSeats(seatClaimService.adminSeatIds(event));
         return response;
     }
 
+    /** Заказы ивента страницами от новых к старым; cursor — из recentOrdersCursor или прошлой страницы. */
+    public OrderSummaryPage getEventOrders(String eventId, String organizerEmail, String cursor, int limit) {
+        checkOwnership(findEventOrThrow(eventId), organizerEmail);
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        Query query = OrderCursor.pageQuery(Criteria.where("eventId").is(eventId), cursor, size);
+        query.fields().exclude("tickets");
+
+        List<Order> orders = mongoTemplate.find(query, Order.class);
+        String next = OrderCursor.trim(orders, size);
+        return new OrderSummaryPage(orders.stream().map(EventStatsCache::toSummary).toList(), next);
+    }
+
     public GlobalStatsResponse getGlobalStatistics(String organizerEmail) {
-        List<Event> myEvents = eventRepository.findByOrganizerIdAndDeletedFalse(organizerEmail);
+        List<Event> myEvents = eventStorageService.withInventory(
+                eventRepository.findByOrganizerIdAndDeletedFalse(organizerEmail));
 
         LocalDate today = LocalDate.now();
-        double totalRevenue    = 0;
         int    totalSold       = 0;
         int    totalViews      = 0;
         int    activeEvents    = 0;
-        Map<String, Double> combinedHistory = new HashMap<>();
 
         for (Event event : myEvents) {
             totalSold  += event.getSold()  != null ? event.getSold()  : 0;
@@ -231,22 +272,12 @@ public class EventService {
             if ("PUBLISHED".equalsIgnoreCase(event.getStatus()) && isFutureOrToday) {
                 activeEvents++;
             }
-
-            List<Order> orders = orderRepository.findByEventIdOrderByCreatedAtDesc(event.getId());
-            totalRevenue += filterSuccess(orders).stream().mapToDouble(Order::getTotalAmount).sum();
-
-            filterSuccess(orders).stream()
-                    .filter(o -> o.getCreatedAt() != null)
-                    .forEach(o -> {
-                        String key = o.getCreatedAt().format(CHART_FMT);
-                        combinedHistory.merge(key, (double) seatCount(o), Double::sum);
-                    });
         }
 
-        List<SalesHistoryData> history = combinedHistory.entrySet().stream()
-                .map(e -> new SalesHistoryData(e.getKey(), e.getValue()))
-                .sorted(Comparator.comparing(SalesHistoryData::getDate))
-                .collect(Collectors.toList());
+        // Выручка и продажи по дням — из дневного свода sales_daily, без чтения заказов
+        List<String> eventIds = myEvents.stream().map(Event::getId).collect(Collectors.toList());
+        double                 totalRevenue = salesRollupService.revenue(eventIds);
+        List<SalesHistoryData> history      = salesRollupService.history(eventIds);
 
         return GlobalStatsResponse.builder()
                 .totalRevenue(totalRevenue)
@@ -271,27 +302,8 @@ public class EventService {
         }
     }
 
-    private List<Order> filterSuccess(List<Order> orders) {
-        return orders.stream()
-                .filter(o -> SUCCESS_STATUSES.contains(o.getStatus()))
-                .collect(Collectors.toList());
-    }
-
-    private int seatCount(Order o) {
-        return o.getSeatIds() != null ? o.getSeatIds().size() : 1;
-    }
-
-    private List<SalesHistoryData> buildSalesHistory(List<Order> successOrders) {
-        return successOrders.stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .collect(Collectors.groupingBy(
-                        o -> o.getCreatedAt().format(CHART_FMT),
-                        Collectors.summingDouble(o -> seatCount(o))
-                ))
-                .entrySet().stream()
-                .map(e -> new SalesHistoryData(e.getKey(), e.getValue()))
-                .sorted(Comparator.comparing(SalesHistoryData::getDate))
-                .collect(Collectors.toList());
+    private void setIfPresent(Update update, String field, Object value) {
+        if (value != null) update.set(field, value);
     }
 
     private BigDecimal calculatePlatformFee(int capacity) {
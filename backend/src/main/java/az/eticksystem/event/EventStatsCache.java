@@ -0,0 +1,263 @@
+package az.eticksystem.event;
+
+import az.eticksystem.event.dto.EventStatsResponse;
+import az.eticksystem.event.dto.SalesHistoryData;
+import az.eticksystem.order.Order;
+import az.eticksystem.order.OrderCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Снимок статистики ивента в памяти: выручка, продажи, проходы, график и последние заказы.
+ * Загружается один раз (sales_daily + одна страница заказов), дальше обновляется по DashboardEvent —
+ * запрос /statistics больше не читает все заказы ивента.
+ * Последние заказы — ограниченное кольцо RECENT_LIMIT, остальное — через курсор (GET /events/{id}/orders).
+ *
+ * Заказ пишется в orders и sales_daily раньше, чем публикуется ORDER_CREATED, поэтому загрузка
+ * могла его уже прочитать. Событие о заказе, созданном до конца загрузки снимка, не применяется
+ * инкрементом, а сбрасывает снимок — иначе заказ учёлся бы дважды. Снимок живёт не дольше
+ * app.stats.snapshot-ttl-seconds: так видны и записи других инстансов.
+ */
+@Slf4j
+@Service
+public class EventStatsCache {
+
+    static final int RECENT_LIMIT = 50;
+
+    private static final int               MAX_EVENTS = 1000;
+    private static final DateTimeFormatter ORDER_FMT  = DateTimeFormatter.ofPattern("dd.MM.yyyy, HH:mm");
+
+    // Просмотры и прогресс отчётов снимок не меняют
+    private static final Set<DashboardEvent.Type> SNAPSHOT_CHANGES = EnumSet.of(
+            DashboardEvent.Type.ORDER_CREATED, DashboardEvent.Type.SEATS_BOOKED,
+            DashboardEvent.Type.TICKET_SCANNED, DashboardEvent.Type.SEATS_UNBOOKED);
+
+    private final MongoTemplate      mongoTemplate;
+    private final SalesRollupService salesRollupService;
+    private final long               ttlNanos;
+
+    // LRU по последнему обращению — статистику открывают для немногих ивентов одновременно
+    private final Map<String, Snapshot> snapshots = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                    return size() > MAX_EVENTS;
+                }
+            });
+
+    // Загрузки снимков в процессе: изменение ивента во время загрузки делает её результат устаревшим.
+    // Запись живёт только пока идёт загрузка — размер карты ограничен числом параллельных загрузок
+    private final ConcurrentMap<String, Loading> loading = new ConcurrentHashMap<>();
+
+    public EventStatsCache(MongoTemplate mongoTemplate,
+                           SalesRollupService salesRollupService,
+                           @Value("${app.stats.snapshot-ttl-seconds:30}") long ttlSeconds) {
+        this.mongoTemplate      = mongoTemplate;
+        this.salesRollupService = salesRollupService;
+        this.ttlNanos           = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /** Неизменяемая копия снимка для ответа. */
+    public record View(double revenue, int sold, int scanned,
+                       List<EventStatsResponse.OrderSummary> recentOrders, String recentOrdersCursor,
+                       List<SalesHistoryData> salesHistory) {}
+
+    public View view(String eventId) {
+        Snapshot snapshot = snapshots.get(eventId);
+        if (snapshot != null && System.nanoTime() - snapshot.loadedNanos > ttlNanos) {
+            snapshots.remove(eventId, snapshot);
+            snapshot = null;
+        }
+        if (snapshot == null) {
+            Loading marker = loading.compute(eventId, (id, l) -> {
+                Loading current = l != null ? l : new Loading();
+                current.loaders++;
+                return current;
+            });
+            long before = marker.changes.get();
+            try {
+                snapshot = load(eventId);
+                // Сначала кладём, потом проверяем: изменение после проверки уже увидит снимок в карте
+                Snapshot cached = snapshots.putIfAbsent(eventId, snapshot);
+                if (cached == null && marker.changes.get() != before) snapshots.remove(eventId, snapshot);
+            } finally {
+                loading.computeIfPresent(eventId, (id, l) -> --l.loaders == 0 ? null : l);
+            }
+        }
+        return snapshot.view();
+    }
+
+    // ── Updates ───────────────────────────────────────────────────────────
+
+    // Синхронно в потоке заказа/скана: только изменение полей уже загруженного снимка
+    @EventListener
+    public void on(DashboardEvent event) {
+        if (event.eventId() == null || !SNAPSHOT_CHANGES.contains(event.type())) return;
+        loading.computeIfPresent(event.eventId(), (id, l) -> {
+            l.changes.incrementAndGet();
+            return l;
+        });
+
+        Snapshot snapshot = snapshots.get(event.eventId());
+        if (snapshot == null) return;
+
+        Map<String, Object> data = event.data();
+        switch (event.type()) {
+            case ORDER_CREATED, SEATS_BOOKED -> {
+                Order order = orderOf(event.eventId(), data);
+                // Заказ создан до конца загрузки — он уже может быть в снимке: перечитать надёжнее
+                if (order.getCreatedAt().isAfter(snapshot.loadedAt)) snapshot.addOrder(order);
+                else snapshots.remove(event.eventId(), snapshot);
+            }
+            case TICKET_SCANNED              -> snapshot.addScanned(intOf(data.get("count")));
+            // Снятие брони меняет и удаляет уже показанные заказы — проще перечитать
+            case SEATS_UNBOOKED              -> snapshots.remove(event.eventId(), snapshot);
+            default -> { }
+        }
+    }
+
+    // ── Mapping ───────────────────────────────────────────────────────────
+
+    public static EventStatsResponse.OrderSummary toSummary(Order o) {
+        EventStatsResponse.OrderSummary s = new EventStatsResponse.OrderSummary();
+        s.setId(o.getId().substring(Math.max(0, o.getId().length() - 6)).toUpperCase());
+        s.setCustomer(o.getCustomerName());
+        s.setEmail(o.getCustomerEmail());
+        s.setCustomerPhone(o.getCustomerPhone() != null ? o.getCustomerPhone() : "-");
+        s.setType(String.valueOf(o.getSeatIds() != null ? o.getSeatIds().size() : 1));
+        s.setAmount(o.getTotalAmount() != null ? o.getTotalAmount() : 0.0);
+        s.setOriginalAmount(o.getOriginalAmount());
+        s.setPromoCode(o.getPromoCode());
+        s.setDate(o.getCreatedAt() != null ? o.getCreatedAt().format(ORDER_FMT) : "Bu gün");
+        s.setStatus("success");
+        return s;
+    }
+
+    /** Заказы без тяжёлого массива tickets — для списков и статистики он не нужен. */
+    public static Query summaryQuery(Criteria criteria) {
+        Query query = Query.query(criteria).with(OrderCursor.SORT);
+        query.fields().exclude("tickets");
+        return query;
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private Snapshot load(String eventId) {
+        List<String> ids = List.of(eventId);
+        Snapshot snapshot = new Snapshot(
+                salesRollupService.revenue(ids),
+                salesRollupService.tickets(ids),
+                countScanned(eventId),
+                salesRollupService.history(ids));
+
+        List<Order> recent = mongoTemplate.find(
+                summaryQuery(Criteria.where("eventId").is(eventId)).limit(RECENT_LIMIT + 1), Order.class);
+        snapshot.hasOlder = recent.size() > RECENT_LIMIT;
+        for (Order o : recent.subList(0, Math.min(recent.size(), RECENT_LIMIT))) {
+            snapshot.recent.addLast(new Recent(toSummary(o), OrderCursor.of(o)));
+        }
+        snapshot.loadedAt    = LocalDateTime.now();
+        snapshot.loadedNanos = System.nanoTime();
+        return snapshot;
+    }
+
+    private int countScanned(String eventId) {
+        Aggregation count = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("eventId").is(eventId)),
+                Aggregation.unwind("tickets"),
+                Aggregation.match(Criteria.where("tickets.scanned").is(true)),
+                Aggregation.count().as("n"));
+        Document result = mongoTemplate.aggregate(count, Order.class, Document.class).getUniqueMappedResult();
+        return result != null ? intOf(result.get("n")) : 0;
+    }
+
+    // Данные события → заказ, чтобы строка списка собиралась тем же toSummary
+    private static Order orderOf(String eventId, Map<String, Object> data) {
+        Object date = data.get("date");
+        return Order.builder()
+                .id(String.valueOf(data.get("orderId")))
+                .eventId(eventId)
+                .customerName((String) data.get("customer"))
+                .customerEmail((String) data.get("email"))
+                .customerPhone((String) data.get("phone"))
+                .promoCode((String) data.get("promoCode"))
+                .totalAmount(data.get("amount") instanceof Number n ? n.doubleValue() : 0.0)
+                .originalAmount(data.get("originalAmount") instanceof Number n ? n.doubleValue() : null)
+                .seatIds(data.get("seatIds") instanceof List<?> seats ? seats.stream().map(String::valueOf).toList() : null)
+                .createdAt(date instanceof LocalDateTime d ? d : LocalDateTime.now())
+                .build();
+    }
+
+    private static int intOf(Object value) {
+        return value instanceof Number n ? n.intValue() : 0;
+    }
+
+    private record Recent(EventStatsResponse.OrderSummary summary, OrderCursor cursor) {}
+
+    private static final class Loading {
+        final AtomicLong changes = new AtomicLong();
+        int loaders; // меняется только внутри compute
+    }
+
+    private static final class Snapshot {
+        double  revenue;
+        int     sold;
+        int     scanned;
+        boolean hasOlder;
+        // Конец загрузки: заказы, созданные позже, в прочитанные данные не попали
+        LocalDateTime loadedAt;
+        long          loadedNanos;
+        final TreeMap<String, Double> history = new TreeMap<>();
+        final ArrayDeque<Recent>      recent  = new ArrayDeque<>(RECENT_LIMIT);
+
+        Snapshot(double revenue, int sold, int scanned, List<SalesHistoryData> history) {
+            this.revenue = revenue;
+            this.sold    = sold;
+            this.scanned = scanned;
+            history.forEach(h -> this.history.put(h.getDate(), h.getAmount()));
+        }
+
+        synchronized void addOrder(Order order) {
+            int tickets = order.getSeatIds() != null ? order.getSeatIds().size() : 0;
+            revenue += order.getTotalAmount();
+            sold    += tickets;
+            // День заказа — тем же ключом, что в sales_daily
+            String day = SalesRollupService.dayOf(order.getCreatedAt());
+            if (!SalesRollupService.UNDATED.equals(day)) history.merge(day, (double) tickets, Double::sum);
+
+            recent.addFirst(new Recent(toSummary(order), OrderCursor.of(order)));
+            if (recent.size() > RECENT_LIMIT) {
+                recent.removeLast();
+                hasOlder = true;
+            }
+        }
+
+        synchronized void addScanned(int count) {
+            scanned += count;
+        }
+
+        synchronized View view() {
+            List<EventStatsResponse.OrderSummary> orders = recent.stream().map(Recent::summary).toList();
+            String cursor = hasOlder && !recent.isEmpty() ? recent.getLast().cursor().encode() : null;
+            List<SalesHistoryData> days = history.entrySet().stream()
+                    .map(e -> new SalesHistoryData(e.getKey(), e.getValue()))
+                    .toList();
+            return new View(revenue, sold, scanned, orders, cursor, days);
+        }
+    }
+}
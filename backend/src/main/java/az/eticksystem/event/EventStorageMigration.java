@@ -0,0 +1,150 @@
+package az.eticksystem.event;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Однократная миграция старых документов events при старте:
+ * seats/seatMapConfig → event_layouts v1, ticketDesign → event_designs v1,
+ * sold/views/занятые места → event_inventory. После переноса поля удаляются из events.
+ * Ивенты с layoutVersion уже мигрированы — повторный запуск их не трогает.
+ * Выполняется как SmartLifecycle в фазе до старта веб-сервера: запросы не видят
+ * наполовину мигрированных ивентов (SeatClaimService принял бы их за ивенты без схемы зала).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventStorageMigration implements SmartLifecycle {
+
+    /** Фаза старта: раньше веб-сервера и планировщиков; SalesCounterReconciler идёт следом. */
+    public static final int PHASE = 0;
+
+    private static final String[] MOVED_FIELDS = {
+            "seats", "seatMapConfig", "ticketDesign",
+            "sold", "views", "soldSeats", "adminSeats", "soldSeatWords", "adminSeatWords"
+    };
+
+    private final MongoTemplate             mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        migrate();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void migrate() {
+        MongoCollection<Document> events = mongoTemplate.getCollection(
+                mongoTemplate.getCollectionName(Event.class));
+
+        int migrated = 0;
+        for (Document doc : events.find(Filters.exists("layoutVersion", false))) {
+            try {
+                migrate(doc);
+                migrated++;
+            } catch (Exception e) {
+                log.error("Event storage migration failed: event={} {}", doc.get("_id"), e.getMessage(), e);
+            }
+        }
+
+        if (migrated > 0) log.info("Event storage migration done: {} events", migrated);
+    }
+
+    private void migrate(Document doc) {
+        String eventId = doc.get("_id").toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        // Места читаем через конвертер — так же, как их прочитал бы Spring Data
+        List<Seat> seats = new ArrayList<>();
+        for (Document seatDoc : doc.getList("seats", Document.class, List.of())) {
+            seats.add(mongoTemplate.getConverter().read(Seat.class, seatDoc));
+        }
+        SeatGrid grid = SeatGrid.of(seats);
+
+        mongoTemplate.save(EventLayout.builder()
+                .id(EventLayout.idOf(eventId, 1))
+                .eventId(eventId)
+                .version(1)
+                .seats(seats)
+                .seatMapConfig(doc.get("seatMapConfig"))
+                .createdAt(now)
+                .build());
+
+        mongoTemplate.save(EventDesign.builder()
+                .id(EventDesign.idOf(eventId, 1))
+                .eventId(eventId)
+                .version(1)
+                .ticketDesign(doc.get("ticketDesign"))
+                .createdAt(now)
+                .build());
+
+        // Inventory только вставляем: если он уже есть (прошлый запуск упал посередине),
+        // в нём могут быть новые продажи — не перетираем
+        Update inventory = new Update()
+                .setOnInsert("sold",  number(doc.get("sold")))
+                .setOnInsert("views", number(doc.get("views")));
+        if (grid != null) {
+            inventory.setOnInsert("soldSeatWords",  words(doc, "soldSeatWords",  "soldSeats",  grid));
+            inventory.setOnInsert("adminSeatWords", words(doc, "adminSeatWords", "adminSeats", grid));
+        }
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(eventId)), inventory, EventInventory.class);
+
+        Update event = new Update()
+                .set("layoutVersion", 1)
+                .set("designVersion", 1);
+        if (grid != null) {
+            event.set("seatGridMinRow", grid.minRow())
+                    .set("seatGridMinCol", grid.minCol())
+                    .set("seatGridCols", grid.cols());
+        }
+        for (String field : MOVED_FIELDS) event.unset(field);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(eventId)), event, Event.class);
+        eventPublisher.publishEvent(new EventLayoutPublishedEvent(eventId, 1));
+    }
+
+    // Битовые слова уже есть — берём их, иначе собираем из legacy-списка id мест
+    private List<Long> words(Document doc, String wordsField, String legacyField, SeatGrid grid) {
+        List<?> existing = doc.getList(wordsField, Object.class);
+        if (existing != null && existing.size() == grid.wordCount()) {
+            List<Long> words = new ArrayList<>(existing.size());
+            for (Object w : existing) words.add(((Number) w).longValue());
+            return words;
+        }
+        return grid.toWords(doc.getList(legacyField, String.class, List.of()));
+    }
+
+    private int number(Object value) {
+        return value instanceof Number n ? n.intValue() : 0;
+    }
+}
@@ -0,0 +1,208 @@
+package az.eticksystem.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Раздельное хранение ивента:
+ *  events          — метаданные (название, дата, статус...), меняются редко;
+ *  event_layouts   — схема зала, неизменяемые версии;
+ *  event_designs   — дизайн билета, неизменяемые версии;
+ *  event_inventory — счётчики и занятые места, пишутся на каждой покупке.
+ * Каждый путь записи трогает только свой документ; полный Event собирается только для отдачи на фронт.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventStorageService {
+
+    private final EventRepository     eventRepository;
+    private final MongoTemplate       mongoTemplate;
+    private final SalesCounterService salesCounterService;
+
+    // ── Create ────────────────────────────────────────────────────────────
+
+    /** Сохраняет новый ивент: seats/seatMapConfig/ticketDesign берутся из transient-полей event. */
+    public Event create(Event event) {
+        SeatGrid grid = SeatGrid.of(event.getSeats());
+
+        event.setLayoutVersion(1);
+        event.setDesignVersion(1);
+        if (grid != null) {
+            event.setSeatGridMinRow(grid.minRow());
+            event.setSeatGridMinCol(grid.minCol());
+            event.setSeatGridCols(grid.cols());
+        }
+
+        Event saved = eventRepository.save(event);
+        LocalDateTime now = LocalDateTime.now();
+
+        mongoTemplate.save(EventLayout.builder()
+                .id(EventLayout.idOf(saved.getId(), 1))
+                .eventId(saved.getId())
+                .version(1)
+                .seats(saved.getSeats())
+                .seatMapConfig(saved.getSeatMapConfig())
+                .createdAt(now)
+                .build());
+
+        mongoTemplate.save(EventDesign.builder()
+                .id(EventDesign.idOf(saved.getId(), 1))
+                .eventId(saved.getId())
+                .version(1)
+                .ticketDesign(saved.getTicketDesign())
+                .createdAt(now)
+                .build());
+
+        EventInventory inventory = EventInventory.builder()
+                .id(saved.getId())
+                .soldSeatWords(grid != null ? grid.emptyWords() : null)
+                .adminSeatWords(grid != null ? grid.emptyWords() : null)
+                .tierRemaining(grid == null ? TierInventoryService.initialRemaining(event.getTiers()) : null)
+                .build();
+        mongoTemplate.save(inventory);
+
+        applyInventory(saved, inventory);
+        return saved;
+    }
+
+    /**
+     * Новый дизайн билета — новая версия, старые остаются нетронутыми.
+     * Номер версии выдаёт атомарный $inc на ивенте: параллельные публикации получают разные номера,
+     * а insert не может перезаписать уже опубликованную версию.
+     */
+    public int publishDesign(Event event, Object ticketDesign) {
+        Query byId = Query.query(Criteria.where("_id").is(event.getId()));
+        byId.fields().include("designVersion");
+        Event allocated = mongoTemplate.findAndModify(byId, new Update().inc("designVersion", 1),
+                FindAndModifyOptions.options().returnNew(true), Event.class);
+        if (allocated == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found");
+        }
+        int version = allocated.getDesignVersion();
+
+        try {
+            mongoTemplate.insert(EventDesign.builder()
+                    .id(EventDesign.idOf(event.getId(), version))
+                    .eventId(event.getId())
+                    .version(version)
+                    .ticketDesign(ticketDesign)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            // Возвращаем ивент на прежнюю версию, если её никто не успел сдвинуть дальше
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(event.getId()).and("designVersion").is(version)),
+                    new Update().inc("designVersion", -1), Event.class);
+            throw e;
+        }
+
+        event.setDesignVersion(version);
+        log.info("Ticket design published: event={} version={}", event.getId(), version);
+        return version;
+    }
+
+    // ── Read ──────────────────────────────────────────────────────────────
+
+    public EventLayout layout(Event event) {
+        if (event.getLayoutVersion() == null) return null;
+        return mongoTemplate.findById(EventLayout.idOf(event.getId(), event.getLayoutVersion()), EventLayout.class);
+    }
+
+    public EventDesign design(Event event) {
+        if (event.getDesignVersion() == null) return null;
+        return mongoTemplate.findById(EventDesign.idOf(event.getId(), event.getDesignVersion()), EventDesign.class);
+    }
+
+    /** Полный ивент для фронта: метаданные + схема зала + дизайн + состояние продаж. */
+    public Event withDetails(Event event) {
+        withDetails(List.of(event));
+        return event;
+    }
+
+    public List<Event> withDetails(List<Event> events) {
+        if (events.isEmpty()) return events;
+
+        // По одному запросу на коллекцию для всего списка — без N+1
+        Map<String, EventLayout> layouts = findByIds(events.stream()
+                .filter(e -> e.getLayoutVersion() != null)
+                .map(e -> EventLayout.idOf(e.getId(), e.getLayoutVersion()))
+                .toList(), EventLayout.class, EventLayout::getId);
+
+        Map<String, EventDesign> designs = findByIds(events.stream()
+                .filter(e -> e.getDesignVersion() != null)
+                .map(e -> EventDesign.idOf(e.getId(), e.getDesignVersion()))
+                .toList(), EventDesign.class, EventDesign::getId);
+
+        for (Event event : events) {
+            if (event.getLayoutVersion() != null) {
+                EventLayout layout = layouts.get(EventLayout.idOf(event.getId(), event.getLayoutVersion()));
+                if (layout != null) {
+                    event.setSeats(layout.getSeats());
+                    event.setSeatMapConfig(layout.getSeatMapConfig());
+                }
+            }
+            if (event.getDesignVersion() != null) {
+                EventDesign design = designs.get(EventDesign.idOf(event.getId(), event.getDesignVersion()));
+                if (design != null) event.setTicketDesign(design.getTicketDesign());
+            }
+        }
+
+        return withInventory(events);
+    }
+
+    /** Только счётчики и занятые места — для статистики, без тяжёлой схемы зала. */
+    public List<Event> withInventory(List<Event> events) {
+        Map<String, EventInventory> inventories = inventories(events.stream().map(Event::getId).toList());
+        for (Event event : events) {
+            applyInventory(event, inventories.get(event.getId()));
+        }
+        return events;
+    }
+
+    public Event withInventory(Event event) {
+        withInventory(List.of(event));
+        return event;
+    }
+
+    public Map<String, EventInventory> inventories(Collection<String> eventIds) {
+        return findByIds(eventIds, EventInventory.class, EventInventory::getId);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    // К сохранённым счётчикам добавляем ещё не сброшенные дельты SalesCounterService
+    private void applyInventory(Event event, EventInventory inventory) {
+        Map<String, Integer> tierSold = new HashMap<>();
+        if (inventory != null && inventory.getTierSold() != null) tierSold.putAll(inventory.getTierSold());
+        salesCounterService.pendingTiers(event.getId()).forEach((tierId, n) -> tierSold.merge(tierId, n, Integer::sum));
+
+        event.setSold((inventory != null ? inventory.getSold() : 0) + salesCounterService.pending(event.getId()));
+        event.setTierSold(tierSold);
+        event.setTierRemaining(inventory != null ? inventory.getTierRemaining() : null);
+        event.setViews((inventory != null ? inventory.getViews() : 0) + salesCounterService.pendingViews(event.getId()));
+        event.setSoldSeatWords(inventory != null ? inventory.getSoldSeatWords() : null);
+        event.setAdminSeatWords(inventory != null ? inventory.getAdminSeatWords() : null);
+    }
+
+    private <T> Map<String, T> findByIds(Collection<String> ids, Class<T> type, Function<T, String> idOf) {
+        if (ids.isEmpty()) return Map.of();
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), type).stream()
+                .collect(Collectors.toMap(idOf, Function.identity()));
+    }
+}
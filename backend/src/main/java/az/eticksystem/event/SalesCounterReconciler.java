@@ -0,0 +1,249 @@
+package az.eticksystem.event;
+
+import az.eticksystem.order.Order;
+import com.mongodb.client.MongoCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сверка счётчиков продаж с коллекцией orders при старте.
+ * Дельты SalesCounterService живут в памяти до сброса — при падении процесса они теряются,
+ * поэтому sold/tierSold в event_inventory пересчитываются по успешным заказам.
+ * Там же GA-ивентам без tierRemaining (созданным до TierInventoryService) считается остаток: quantity − продано.
+ *
+ * Выполняется как SmartLifecycle сразу после EventStorageMigration — до старта веб-сервера
+ * и планировщиков, поэтому заказ этого процесса не может попасть в подсчёт дважды.
+ * Поправка пишется $inc на разницу (ожидаемое − сохранённое) с условием, что сохранённое
+ * не изменилось: сброс дельт другого инстанса между чтением и записью не перетирается.
+ *
+ * Сверка рассчитана на один инстанс: несброшенные дельты других живых инстансов (rolling deploy)
+ * уже есть в orders, но ещё не в event_inventory — сверка добавит их, а потом их сбросит сам инстанс,
+ * и продажи посчитаются дважды. При нескольких инстансах app.sales-counter.reconcile-on-start=true
+ * оставляется только одному, который перезапускается без параллельно работающих соседей.
+ */
+@Slf4j
+@Component
+public class SalesCounterReconciler implements SmartLifecycle {
+
+    private static final Set<String> SUCCESS_STATUSES = Set.of("SUCCESS", "Ödənilib");
+
+    // GA_{tierId}_{timestamp}_{i} / ADM_{tierId}_{timestamp}_{i} — то же, что SalesCounterService.tierOf
+    private static final String GA_PREFIX = "^(GA|ADM)_";
+    private static final String GA_TIER   = "^(?:GA|ADM)_(.+)_[^_]*_[^_]*$";
+
+    private static final int ATTEMPTS = 3;
+
+    private final MongoTemplate       mongoTemplate;
+    private final SeatClaimService    seatClaimService;
+    private final SalesCounterService salesCounterService;
+    private final boolean             reconcileOnStart;
+
+    private volatile boolean running;
+
+    public SalesCounterReconciler(MongoTemplate mongoTemplate,
+                                  SeatClaimService seatClaimService,
+                                  SalesCounterService salesCounterService,
+                                  @Value("${app.sales-counter.reconcile-on-start:true}") boolean reconcileOnStart) {
+        this.mongoTemplate       = mongoTemplate;
+        this.seatClaimService    = seatClaimService;
+        this.salesCounterService = salesCounterService;
+        this.reconcileOnStart    = reconcileOnStart;
+    }
+
+    @Override
+    public void start() {
+        reconcileAll();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return EventStorageMigration.PHASE + 1;
+    }
+
+    private void reconcileAll() {
+        // Всё, что успели продать с момента запуска, сначала уходит в базу — иначе сверка это перетрёт
+        salesCounterService.flush();
+
+        Map<String, Totals> totals = totals();
+
+        if (reconcileOnStart) reconcileCounters(totals);
+        else log.info("Sales counter reconcile disabled on this instance");
+
+        int initialized = initTierRemaining(totals);
+        if (initialized > 0) log.info("Tier inventory initialized: {} events", initialized);
+    }
+
+    private void reconcileCounters(Map<String, Totals> totals) {
+        // Ивенты с заказами плюс ивенты без единого успешного заказа, у которых счётчик не ноль
+        Set<String> eventIds = new HashSet<>(totals.keySet());
+        Query nonZero = Query.query(Criteria.where(SalesCounterService.SOLD).ne(0));
+        nonZero.fields().include("_id");
+        mongoTemplate.find(nonZero, EventInventory.class).forEach(i -> eventIds.add(i.getId()));
+
+        int fixed = 0;
+        for (String eventId : eventIds) {
+            Totals t = totals.get(eventId);
+            if (reconcile(eventId, t != null ? t : new Totals(eventId))) fixed++;
+        }
+
+        log.info("Sales counters reconciled: events={} corrected={}", eventIds.size(), fixed);
+    }
+
+    /**
+     * Проданные места по ивентам одной агрегацией: заказы разворачиваются по местам прямо в базе,
+     * GA-места группируются по категории, места схемы зала — по seatId (категорию даёт SeatGrid).
+     */
+    private Map<String, Totals> totals() {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("status", new Document("$in", List.copyOf(SUCCESS_STATUSES)))
+                        .append("eventId", new Document("$ne", null))
+                        .append("seatIds", new Document("$type", "array"))),
+                new Document("$project", new Document("eventId", 1).append("seatIds", 1)),
+                new Document("$unwind", "$seatIds"),
+                new Document("$group", new Document("_id", new Document("e", "$eventId")
+                        .append("tier", new Document("$let", new Document("vars",
+                                        new Document("m", new Document("$regexFind",
+                                                new Document("input", "$seatIds").append("regex", GA_TIER))))
+                                .append("in", new Document("$arrayElemAt", List.of("$$m.captures", 0)))))
+                        .append("seat", new Document("$cond", List.of(
+                                new Document("$regexMatch", new Document("input", "$seatIds").append("regex", GA_PREFIX)),
+                                "$$REMOVE",
+                                "$seatIds"))))
+                        .append("n", new Document("$sum", 1))));
+
+        Map<String, Totals> totals = new HashMap<>();
+        try (MongoCursor<Document> rows = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class))
+                .aggregate(pipeline).allowDiskUse(true).iterator()) {
+            while (rows.hasNext()) {
+                Document row = rows.next();
+                Document id  = row.get("_id", Document.class);
+                totals.computeIfAbsent(id.getString("e"), Totals::new)
+                        .add(id.getString("tier"), id.getString("seat"), ((Number) row.get("n")).intValue());
+            }
+        }
+        return totals;
+    }
+
+    private boolean reconcile(String eventId, Totals t) {
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            EventInventory inventory = mongoTemplate.findOne(
+                    Query.query(Criteria.where("_id").is(eventId)), EventInventory.class);
+            int                  stored      = inventory != null ? inventory.getSold() : 0;
+            Map<String, Integer> storedTiers = inventory != null && inventory.getTierSold() != null
+                    ? inventory.getTierSold() : Map.of();
+
+            Update update = new Update();
+            if (t.sold != stored) update.inc(SalesCounterService.SOLD, t.sold - stored);
+            Set<String> tierIds = new HashSet<>(storedTiers.keySet());
+            tierIds.addAll(t.tiers.keySet());
+            for (String tierId : tierIds) {
+                int diff = t.tiers.getOrDefault(tierId, 0) - storedTiers.getOrDefault(tierId, 0);
+                if (diff != 0) update.inc(SalesCounterService.TIER_SOLD + "." + tierId, diff);
+            }
+            if (update.getUpdateObject().isEmpty()) return false;
+
+            log.warn("Sales counter drift: event={} stored={} orders={}", eventId, stored, t.sold);
+            if (inventory == null) {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(eventId)), update, EventInventory.class);
+                return true;
+            }
+            // Сохранённое значение сдвинулось (сброс другого инстанса) — читаем заново
+            Query unchanged = Query.query(Criteria.where("_id").is(eventId).and(SalesCounterService.SOLD).is(stored));
+            if (mongoTemplate.updateFirst(unchanged, update, EventInventory.class).getModifiedCount() > 0) return true;
+        }
+        log.warn("Sales counter reconcile skipped, inventory keeps changing: event={}", eventId);
+        return false;
+    }
+
+    private int initTierRemaining(Map<String, Totals> totals) {
+        Query missing = Query.query(Criteria.where(TierInventoryService.TIER_REMAINING).exists(false));
+        missing.fields().include("_id");
+        List<String> ids = mongoTemplate.find(missing, EventInventory.class).stream()
+                .map(EventInventory::getId)
+                .toList();
+        if (ids.isEmpty()) return 0;
+
+        Query gaEvents = Query.query(Criteria.where("_id").in(ids).and("isReservedSeating").ne(true));
+        gaEvents.fields().include("tiers");
+
+        int initialized = 0;
+        for (Event event : mongoTemplate.find(gaEvents, Event.class)) {
+            Totals sold = totals.get(event.getId());
+            Map<String, Integer> remaining = TierInventoryService.initialRemaining(event.getTiers());
+            remaining.replaceAll((tierId, quantity) ->
+                    Math.max(0, quantity - (sold != null ? sold.tiers.getOrDefault(tierId, 0) : 0)));
+
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(event.getId())
+                            .and(TierInventoryService.TIER_REMAINING).exists(false)),
+                    new Update().set(TierInventoryService.TIER_REMAINING, remaining),
+                    EventInventory.class);
+            initialized++;
+        }
+        return initialized;
+    }
+
+    private final class Totals {
+        final String               eventId;
+        final Map<String, Integer> tiers = new HashMap<>();
+        SeatGrid grid;
+        boolean  gridLoaded;
+        int      sold;
+
+        Totals(String eventId) {
+            this.eventId = eventId;
+        }
+
+        /** Строка агрегации: GA-категория (tierId) либо место схемы зала (seatId), n — сколько продано. */
+        void add(String gaTier, String seatId, int n) {
+            sold += n;
+            String tierId = seatId != null ? tierOfSeat(seatId) : grid() == null ? gaTier : null;
+            if (tierId != null) tiers.merge(tierId, n, Integer::sum);
+        }
+
+        private String tierOfSeat(String seatId) {
+            return SalesCounterService.tierOf(grid(), seatId);
+        }
+
+        private SeatGrid grid() {
+            if (!gridLoaded) {
+                grid       = gridOrNull(eventId);
+                gridLoaded = true;
+            }
+            return grid;
+        }
+    }
+
+    // Заказы удалённого из базы ивента — просто без разбивки по категориям
+    private SeatGrid gridOrNull(String eventId) {
+        try {
+            return seatClaimService.gridFor(eventId);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
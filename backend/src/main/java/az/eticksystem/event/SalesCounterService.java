@@ -0,0 +1,145 @@
+package az.eticksystem.event;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики проданных билетов по ивенту и категории (и просмотров страницы ивента).
+ * Покупка только увеличивает LongAdder в памяти — без блокировок и без записи в базу;
+ * накопленные дельты периодически сбрасываются в event_inventory одним $inc на ивент.
+ * Читающие (статистика, страница ивента) складывают сохранённое значение и ещё не сброшенную дельту,
+ * поэтому цифра точная в любой момент. Дельты, потерянные при падении процесса,
+ * восстанавливает SalesCounterReconciler по коллекции orders при старте.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesCounterService {
+
+    static final String SOLD      = "sold";
+    static final String TIER_SOLD = "tierSold";
+    static final String VIEWS     = "views";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ConcurrentMap<String, EventCounters> counters = new ConcurrentHashMap<>();
+
+    /** Проданные (sign = 1) или освобождённые (sign = -1) места ивента. */
+    public void add(String eventId, SeatGrid grid, Collection<String> seatIds, int sign) {
+        if (seatIds == null || seatIds.isEmpty()) return;
+
+        EventCounters c = counters.computeIfAbsent(eventId, id -> new EventCounters());
+        for (String seatId : seatIds) {
+            String tierId = tierOf(grid, seatId);
+            if (tierId != null) c.tier(tierId).add(sign);
+        }
+        c.sold.add((long) sign * seatIds.size());
+    }
+
+    /** Просмотр публичной страницы ивента. */
+    public void addView(String eventId) {
+        counters.computeIfAbsent(eventId, id -> new EventCounters()).views.increment();
+    }
+
+    public int pendingViews(String eventId) {
+        EventCounters c = counters.get(eventId);
+        return c != null ? (int) c.views.sum() : 0;
+    }
+
+    /** Ещё не сброшенная в базу дельта проданных билетов ивента. */
+    public int pending(String eventId) {
+        EventCounters c = counters.get(eventId);
+        return c != null ? (int) c.sold.sum() : 0;
+    }
+
+    /** Не сброшенные дельты по категориям ивента. */
+    public Map<String, Integer> pendingTiers(String eventId) {
+        EventCounters c = counters.get(eventId);
+        if (c == null) return Map.of();
+
+        Map<String, Integer> result = new HashMap<>();
+        c.tiers.forEach((tierId, adder) -> {
+            long value = adder.sum();
+            if (value != 0) result.put(tierId, (int) value);
+        });
+        return result;
+    }
+
+    /**
+     * Категория места: для схемы зала — из SeatGrid,
+     * для GA — из id вида GA_{tierId}_{timestamp}_{i} (ADM_ — выдано организатором; tierId сам может содержать "_").
+     */
+    public static String tierOf(SeatGrid grid, String seatId) {
+        if (seatId == null) return null;
+        if (grid != null) return grid.tierIdOf(seatId);
+
+        int start = seatId.startsWith("GA_") ? 3 : seatId.startsWith("ADM_") ? 4 : -1;
+        if (start < 0) return null;
+
+        int last = seatId.lastIndexOf('_');
+        int prev = last > start ? seatId.lastIndexOf('_', last - 1) : -1;
+        return prev > start ? seatId.substring(start, prev) : null;
+    }
+
+    // ── Flush ─────────────────────────────────────────────────────────────
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${app.sales-counter.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        counters.forEach(this::flush);
+    }
+
+    private void flush(String eventId, EventCounters c) {
+        // Вычитаем ровно прочитанное значение (а не sumThenReset) —
+        // параллельные инкременты между чтением и сбросом не теряются
+        long sold  = c.sold.sum();
+        long views = c.views.sum();
+        Map<String, Long> tiers = new HashMap<>();
+        c.tiers.forEach((tierId, adder) -> {
+            long value = adder.sum();
+            if (value != 0) tiers.put(tierId, value);
+        });
+        if (sold == 0 && views == 0 && tiers.isEmpty()) return;
+
+        Update update = new Update();
+        if (sold  != 0) update.inc(SOLD, sold);
+        if (views != 0) update.inc(VIEWS, views);
+        tiers.forEach((tierId, value) -> update.inc(TIER_SOLD + "." + tierId, value));
+
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(eventId)), update, EventInventory.class);
+        } catch (RuntimeException e) {
+            // Дельта остаётся в памяти — уйдёт следующим сбросом
+            log.error("Sales counter flush failed: event={} {}", eventId, e.getMessage());
+            return;
+        }
+
+        c.sold.add(-sold);
+        c.views.add(-views);
+        tiers.forEach((tierId, value) -> c.tier(tierId).add(-value));
+    }
+
+    private static final class EventCounters {
+        final LongAdder                        sold  = new LongAdder();
+        final LongAdder                        views = new LongAdder();
+        final ConcurrentMap<String, LongAdder> tiers = new ConcurrentHashMap<>();
+
+        LongAdder tier(String tierId) {
+            return tiers.computeIfAbsent(tierId, id -> new LongAdder());
+        }
+    }
+}
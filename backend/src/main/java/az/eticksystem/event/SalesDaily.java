@@ -0,0 +1,36 @@
+package az.eticksystem.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Продажи ивента по категории за один день (UTC), id = "eventId|tierId|yyyy-MM-dd".
+ * Поддерживается инкрементально (SalesRollupService) — статистика и графики читают
+ * несколько документов на день, а не все заказы.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sales_daily")
+@CompoundIndex(name = "eventId_day", def = "{'eventId': 1, 'day': 1}")
+public class SalesDaily {
+
+    @Id
+    private String id;
+
+    private String eventId;
+    private String tierId;
+    private String day;     // yyyy-MM-dd, UTC — сортируется как строка и не склеивает годы
+
+    private int    tickets;
+    private double revenue;
+
+    /** Заказы, в которых есть места этой категории (заказ из двух категорий учтён в обеих) */
+    private int    orders;
+}
@@ -0,0 +1,233 @@
+package az.eticksystem.event;
+
+import az.eticksystem.event.dto.SalesHistoryData;
+import az.eticksystem.order.Order;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Дневной свод продаж (sales_daily) по ивенту, категории и дню UTC.
+ * Каждый заказ и снятие брони организатора меняют только свои документы через $inc,
+ * поэтому графики и выручка считаются за O(дней), а не O(заказов).
+ * Пустая коллекция (первый запуск) заполняется по orders при старте, полную пересборку
+ * можно включить свойством app.sales-rollup.rebuild-on-start. Пересборка — SmartLifecycle
+ * после SalesCounterReconciler, до старта веб-сервера: заказы этого процесса в неё не вклиниваются.
+ */
+@Slf4j
+@Service
+public class SalesRollupService implements SmartLifecycle {
+
+    private static final Set<String> SUCCESS_STATUSES = Set.of("SUCCESS", "Ödənilib");
+    private static final String      NO_TIER          = "-";
+    static final String              UNDATED          = LocalDate.EPOCH.toString();
+    private static final int         BATCH            = 1000;
+
+    private final MongoTemplate    mongoTemplate;
+    private final SeatClaimService seatClaimService;
+    private final boolean          rebuildOnStart;
+
+    private volatile boolean running;
+
+    public SalesRollupService(MongoTemplate mongoTemplate,
+                              SeatClaimService seatClaimService,
+                              @Value("${app.sales-rollup.rebuild-on-start:false}") boolean rebuildOnStart) {
+        this.mongoTemplate    = mongoTemplate;
+        this.seatClaimService = seatClaimService;
+        this.rebuildOnStart   = rebuildOnStart;
+    }
+
+    // ── Incremental ───────────────────────────────────────────────────────
+
+    /** Новый успешный заказ: места и выручка по категориям в день создания заказа. */
+    public void recordOrder(Order order) {
+        if (order.getSeatIds() == null || order.getSeatIds().isEmpty()) return;
+        apply(order, order.getSeatIds(), order.getTotalAmount(), 1, 1);
+    }
+
+    /**
+     * Места, снятые с заказа организатором. Выручка не меняется — оплаченные места снимать нельзя;
+     * orderRemoved — заказ удалён целиком и больше не считается.
+     */
+    public void recordUnbook(Order order, Collection<String> seatIds, boolean orderRemoved) {
+        if (seatIds == null || seatIds.isEmpty()) return;
+        apply(order, seatIds, 0.0, -1, orderRemoved ? -1 : 0);
+    }
+
+    private void apply(Order order, Collection<String> seatIds, Double amount, int sign, int orderDelta) {
+        String day = dayOf(order.getCreatedAt());
+        Map<String, Integer> byTier = byTier(order.getEventId(), seatIds);
+        double total = amount != null ? amount : 0.0;
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesDaily.class);
+        byTier.forEach((tierId, count) -> bulk.upsert(
+                Query.query(Criteria.where("_id").is(id(order.getEventId(), tierId, day))),
+                new Update()
+                        .setOnInsert("eventId", order.getEventId())
+                        .setOnInsert("tierId",  tierId)
+                        .setOnInsert("day",     day)
+                        .inc("tickets", sign * count)
+                        // Цена заказа на категории не разбита — делим пропорционально местам
+                        .inc("revenue", total * count / seatIds.size())
+                        .inc("orders",  orderDelta)));
+        bulk.execute();
+    }
+
+    // ── Read ──────────────────────────────────────────────────────────────
+
+    /** Продано билетов по дням (все категории), по возрастанию даты. */
+    public List<SalesHistoryData> history(Collection<String> eventIds) {
+        Map<String, Double> byDay = new TreeMap<>();
+        for (SalesDaily d : find(eventIds)) {
+            if (d.getTickets() != 0 && !UNDATED.equals(d.getDay())) byDay.merge(d.getDay(), (double) d.getTickets(), Double::sum);
+        }
+        List<SalesHistoryData> history = new ArrayList<>(byDay.size());
+        byDay.forEach((day, tickets) -> history.add(new SalesHistoryData(day, tickets)));
+        return history;
+    }
+
+    public double revenue(Collection<String> eventIds) {
+        return find(eventIds).stream().mapToDouble(SalesDaily::getRevenue).sum();
+    }
+
+    public int tickets(Collection<String> eventIds) {
+        return find(eventIds).stream().mapToInt(SalesDaily::getTickets).sum();
+    }
+
+    private List<SalesDaily> find(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) return List.of();
+        Query query = Query.query(Criteria.where("eventId").in(eventIds));
+        query.fields().include("day").include("tickets").include("revenue");
+        return mongoTemplate.find(query, SalesDaily.class);
+    }
+
+    // ── Rebuild ───────────────────────────────────────────────────────────
+
+    @Override
+    public void start() {
+        if (rebuildOnStart || mongoTemplate.estimatedCount(SalesDaily.class) == 0) rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return EventStorageMigration.PHASE + 2;
+    }
+
+    /**
+     * Полная пересборка по успешным заказам. Идемпотентна: каждый документ пишется upsert-ом
+     * с абсолютными значениями ($set), поэтому два инстанса, стартующие одновременно, дают тот же итог.
+     * Удаляются только документы, которые были до начала пересборки и не получились из заказов, —
+     * свежие $inc других инстансов не стираются.
+     */
+    public void rebuild() {
+        Query existing = new Query();
+        existing.fields().include("_id");
+        Set<String> stale = new HashSet<>();
+        try (Stream<SalesDaily> docs = mongoTemplate.stream(existing, SalesDaily.class)) {
+            docs.forEach(d -> stale.add(d.getId()));
+        }
+
+        Query query = Query.query(Criteria.where("status").in(SUCCESS_STATUSES));
+        query.fields().include("eventId").include("seatIds").include("totalAmount").include("createdAt");
+
+        Map<String, SalesDaily> rollup = new HashMap<>();
+        Map<String, SeatGrid>   grids  = new HashMap<>();
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            orders.forEach(order -> {
+                if (order.getEventId() == null || order.getSeatIds() == null || order.getSeatIds().isEmpty()) return;
+                String day   = dayOf(order.getCreatedAt());
+                double total = order.getTotalAmount() != null ? order.getTotalAmount() : 0.0;
+                SeatGrid grid = grids.computeIfAbsent(order.getEventId(), this::gridOrNull);
+
+                tierCounts(grid, order.getSeatIds()).forEach((tierId, count) -> {
+                    SalesDaily d = rollup.computeIfAbsent(id(order.getEventId(), tierId, day), id ->
+                            SalesDaily.builder().id(id).eventId(order.getEventId()).tierId(tierId).day(day).build());
+                    d.setTickets(d.getTickets() + count);
+                    d.setRevenue(d.getRevenue() + total * count / order.getSeatIds().size());
+                    d.setOrders(d.getOrders() + 1);
+                });
+            });
+        }
+
+        List<SalesDaily> docs = new ArrayList<>(rollup.values());
+        for (int i = 0; i < docs.size(); i += BATCH) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesDaily.class);
+            for (SalesDaily d : docs.subList(i, Math.min(docs.size(), i + BATCH))) {
+                bulk.upsert(Query.query(Criteria.where("_id").is(d.getId())), new Update()
+                        .set("eventId", d.getEventId())
+                        .set("tierId",  d.getTierId())
+                        .set("day",     d.getDay())
+                        .set("tickets", d.getTickets())
+                        .set("revenue", d.getRevenue())
+                        .set("orders",  d.getOrders()));
+            }
+            bulk.execute();
+        }
+
+        stale.removeAll(rollup.keySet());
+        List<String> removed = new ArrayList<>(stale);
+        for (int i = 0; i < removed.size(); i += BATCH) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(removed.subList(i, Math.min(removed.size(), i + BATCH)))),
+                    SalesDaily.class);
+        }
+        log.info("Sales rollup rebuilt: {} day/tier documents, {} stale removed", docs.size(), removed.size());
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private Map<String, Integer> byTier(String eventId, Collection<String> seatIds) {
+        return tierCounts(gridOrNull(eventId), seatIds);
+    }
+
+    private Map<String, Integer> tierCounts(SeatGrid grid, Collection<String> seatIds) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String seatId : seatIds) {
+            String tierId = SalesCounterService.tierOf(grid, seatId);
+            counts.merge(tierId != null ? tierId : NO_TIER, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    // Заказы без даты (старые данные) — отдельный день UNDATED: в выручке они нужны, в графике нет
+    static String dayOf(LocalDateTime createdAt) {
+        if (createdAt == null) return UNDATED;
+        return createdAt.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).toLocalDate().toString();
+    }
+
+    private static String id(String eventId, String tierId, String day) {
+        return eventId + "|" + tierId + "|" + day;
+    }
+
+    // Заказы удалённого из базы ивента — без разбивки по категориям
+    private SeatGrid gridOrNull(String eventId) {
+        try {
+            return seatClaimService.gridFor(eventId);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
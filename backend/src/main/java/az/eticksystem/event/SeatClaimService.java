@@ -0,0 +1,192 @@
+package az.eticksystem.event;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Атомарный захват мест ивента.
+ * Состояние мест — битовые слова в event_inventory (soldSeatWords/adminSeatWords),
+ * номер бита берётся из SeatGrid.
+ * Одна условная операция на весь набор мест: $bitsAllClear по нужным словам + $bit or —
+ * документ обновляется только если ни одно из мест ещё не занято, проверка каждого места O(1).
+ * Пишем только в маленький документ event_inventory — сам Event со схемой зала не трогается.
+ * Количество проданных считает SalesCounterService — в этом запросе только биты мест.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatClaimService {
+
+    private static final String SOLD_WORDS  = "soldSeatWords";
+    private static final String ADMIN_WORDS = "adminSeatWords";
+
+    private final MongoTemplate        mongoTemplate;
+    private final EventStorageService  eventStorageService;
+    private final SalesCounterService  salesCounterService;
+    private final TierInventoryService tierInventoryService;
+
+    // Версия схемы зала неизменна — сетка строится один раз; новая версия (EventLayoutPublishedEvent) вытесняет запись.
+    // Ивент без layoutVersion (ещё не мигрирован) не кешируется, иначе он остался бы «без схемы» до рестарта
+    private final ConcurrentMap<String, Optional<SeatGrid>> grids = new ConcurrentHashMap<>();
+
+    /** Захватывает места для обычного заказа. Бросает 409 при конфликте. */
+    public void claim(String eventId, List<String> seatIds) {
+        claim(eventId, seatIds, false, true);
+    }
+
+    /** Захват мест организатором — дополнительно помечает их в adminSeatWords. */
+    public void claimAdmin(String eventId, List<String> seatIds) {
+        claim(eventId, seatIds, true, true);
+    }
+
+    /** Бронь: места заняты для всех остальных, но в sold ещё не считаются. */
+    public void hold(String eventId, List<String> seatIds) {
+        claim(eventId, seatIds, false, false);
+    }
+
+    /** Снимает бронь — места снова свободны, sold не меняется. */
+    public void releaseHold(String eventId, Collection<String> seatIds) {
+        Map<Integer, Long> masks = knownMasks(eventId, seatIds);
+        if (masks.isEmpty()) return;
+
+        Update update = new Update();
+        masks.forEach((word, mask) -> update.bitwise(SOLD_WORDS + "." + word).and(~mask));
+        mongoTemplate.updateFirst(byId(eventId), update, EventInventory.class);
+    }
+
+    /** Учитывает продажу уже захваченных мест (бронь → заказ) или мест GA без схемы зала. */
+    public void addSold(String eventId, Collection<String> seatIds) {
+        salesCounterService.add(eventId, gridFor(eventId), seatIds, 1);
+    }
+
+    /** Освобождает места (компенсация при ошибке или admin-unbook). */
+    public void release(String eventId, Collection<String> seatIds) {
+        if (seatIds == null || seatIds.isEmpty()) return;
+
+        SeatGrid grid = gridFor(eventId);
+        if (grid == null) tierInventoryService.restore(eventId, seatIds);
+
+        Map<Integer, Long> masks = knownMasks(eventId, seatIds);
+        if (!masks.isEmpty()) {
+            Update update = new Update();
+            masks.forEach((word, mask) -> {
+                update.bitwise(SOLD_WORDS  + "." + word).and(~mask);
+                update.bitwise(ADMIN_WORDS + "." + word).and(~mask);
+            });
+            mongoTemplate.updateFirst(byId(eventId), update, EventInventory.class);
+        }
+        salesCounterService.add(eventId, grid, seatIds, -1);
+    }
+
+    /** Явный список мест, заблокированных организатором — для статистики (нужен event с inventory). */
+    public List<String> adminSeatIds(Event event) {
+        SeatGrid grid = gridFor(event.getId());
+        return grid != null ? grid.seatIds(event.getAdminSeatWords()) : List.of();
+    }
+
+    /** Сетка мест ивента (null — без схемы зала). */
+    public SeatGrid gridFor(String eventId) {
+        Optional<SeatGrid> grid = grids.computeIfAbsent(eventId, this::loadGrid);
+        return grid != null ? grid.orElse(null) : null;
+    }
+
+    @EventListener
+    public void on(EventLayoutPublishedEvent event) {
+        grids.remove(event.eventId());
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private void claim(String eventId, List<String> seatIds, boolean admin, boolean countAsSold) {
+        SeatGrid grid = gridFor(eventId);
+
+        if (grid == null) {
+            // Без схемы зала мест нет — списываем остаток категорий и считаем продажу
+            if (!countAsSold) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bu tədbirdə oturacaq seçimi yoxdur");
+            }
+            tierInventoryService.reserve(eventId, seatIds);
+            salesCounterService.add(eventId, null, seatIds, 1);
+            return;
+        }
+
+        // Неизвестные места и повторы отсекаются ещё до запроса в базу
+        Map<Integer, Long> masks = grid.masks(seatIds);
+
+        // Условие и изменение в одном запросе — MongoDB гарантирует атомарность на уровне документа
+        Criteria criteria = Criteria.where("_id").is(eventId);
+        Update   update   = new Update();
+        masks.forEach((word, mask) -> {
+            criteria.and(SOLD_WORDS + "." + word).bits().allClear(bitPositions(mask));
+            update.bitwise(SOLD_WORDS + "." + word).or(mask);
+            if (admin) update.bitwise(ADMIN_WORDS + "." + word).or(mask);
+        });
+
+        UpdateResult result = mongoTemplate.updateFirst(Query.query(criteria), update, EventInventory.class);
+        if (result.getModifiedCount() == 0) {
+            log.warn("Seat claim conflict: event={} seats={}", eventId, seatIds);
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Seçilmiş oturacaqlardan biri artıq satılıb. Zəhmət olmasa başqa yer seçin.");
+        }
+        if (countAsSold) salesCounterService.add(eventId, grid, seatIds, 1);
+    }
+
+    // Для освобождения неизвестные места просто пропускаем — освобождать нечего
+    private Map<Integer, Long> knownMasks(String eventId, Collection<String> seatIds) {
+        SeatGrid grid = gridFor(eventId);
+        if (grid == null || seatIds == null) return Map.of();
+        return grid.masks(seatIds.stream()
+                .filter(id -> grid.indexOf(id) >= 0)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    private Optional<SeatGrid> loadGrid(String eventId) {
+        Query query = byId(eventId);
+        query.fields().include("layoutVersion");
+
+        Event event = mongoTemplate.findOne(query, Event.class);
+        if (event == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found");
+        }
+        if (event.getLayoutVersion() == null) {
+            // null не попадает в computeIfAbsent — следующий запрос прочитает ивент заново
+            log.warn("Event without layoutVersion (not migrated yet): {}", eventId);
+            return null;
+        }
+
+        EventLayout layout = eventStorageService.layout(event);
+        return Optional.ofNullable(layout != null ? SeatGrid.of(layout.getSeats()) : null);
+    }
+
+    // $bitsAllClear принимает маску как список позиций битов (numeric-маска в драйвере только int)
+    private static List<Integer> bitPositions(long mask) {
+        List<Integer> positions = new ArrayList<>(Long.bitCount(mask));
+        for (long m = mask; m != 0; m &= m - 1) {
+            positions.add(Long.numberOfTrailingZeros(m));
+        }
+        return positions;
+    }
+
+    private Query byId(String eventId) {
+        return Query.query(Criteria.where("_id").is(eventId));
+    }
+}
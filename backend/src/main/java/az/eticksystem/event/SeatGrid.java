@@ -0,0 +1,154 @@
+package az.eticksystem.event;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Геометрия схемы зала: место "row_col" ↔ номер бита.
+ * Бит i лежит в слове i / 64 — так состояние мест хранится в Mongo как массив long,
+ * и проверка/захват любого места делается за O(1) операторами $bitsAllClear / $bit.
+ * Схема зала после создания ивента не меняется, поэтому объект неизменяемый и кешируется.
+ */
+public final class SeatGrid {
+
+    private final int    minRow;
+    private final int    minCol;
+    private final int    cols;
+    private final int    size;
+    private final BitSet   existing; // какие клетки сетки — реальные места
+    private final String[] tierIds;  // категория билета по номеру бита
+
+    private SeatGrid(int minRow, int minCol, int cols, int rows, BitSet existing, String[] tierIds) {
+        this.minRow   = minRow;
+        this.minCol   = minCol;
+        this.cols     = cols;
+        this.size     = rows * cols;
+        this.existing = existing;
+        this.tierIds  = tierIds;
+    }
+
+    /** null — у ивента нет схемы зала (general admission). */
+    public static SeatGrid of(List<Seat> seats) {
+        if (seats == null || seats.isEmpty()) return null;
+
+        int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE, maxCol = Integer.MIN_VALUE;
+        for (Seat s : seats) {
+            minRow = Math.min(minRow, s.getRow());
+            minCol = Math.min(minCol, s.getCol());
+            maxRow = Math.max(maxRow, s.getRow());
+            maxCol = Math.max(maxCol, s.getCol());
+        }
+
+        int cols = maxCol - minCol + 1;
+        int rows = maxRow - minRow + 1;
+        BitSet   existing = new BitSet(rows * cols);
+        String[] tierIds  = new String[rows * cols];
+        for (Seat s : seats) {
+            int index = (s.getRow() - minRow) * cols + (s.getCol() - minCol);
+            existing.set(index);
+            tierIds[index] = s.getTierId();
+        }
+        return new SeatGrid(minRow, minCol, cols, rows, existing, tierIds);
+    }
+
+    public int minRow()    { return minRow; }
+    public int minCol()    { return minCol; }
+    public int cols()      { return cols; }
+    public int wordCount() { return (size + 63) >>> 6; }
+
+    /** Номер бита места или -1, если такого места на схеме нет. */
+    public int indexOf(String seatId) {
+        if (seatId == null) return -1;
+        int sep = seatId.indexOf('_');
+        if (sep <= 0 || sep == seatId.length() - 1) return -1;
+
+        int row, col;
+        try {
+            row = Integer.parseInt(seatId, 0, sep, 10) - minRow;
+            col = Integer.parseInt(seatId, sep + 1, seatId.length(), 10) - minCol;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (row < 0 || col < 0 || col >= cols) return -1;
+
+        int index = row * cols + col;
+        return index < size && existing.get(index) ? index : -1;
+    }
+
+    /** Категория билета места или null, если места нет на схеме. */
+    public String tierIdOf(String seatId) {
+        int index = indexOf(seatId);
+        return index >= 0 ? tierIds[index] : null;
+    }
+
+    public String seatIdOf(int index) {
+        return (index / cols + minRow) + "_" + (index % cols + minCol);
+    }
+
+    /**
+     * Маски по словам для набора мест: номер слова → биты этих мест.
+     * Неизвестное место или повтор — 400, заказ даже не доходит до базы.
+     */
+    public Map<Integer, Long> masks(Collection<String> seatIds) {
+        Map<Integer, Long> masks = new LinkedHashMap<>();
+        for (String seatId : seatIds) {
+            int index = indexOf(seatId);
+            if (index < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Oturacaq tapılmadı: " + seatId);
+            }
+            long bit = 1L << (index & 63);
+            long prev = masks.getOrDefault(index >>> 6, 0L);
+            if ((prev & bit) != 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Eyni oturacaq bir neçə dəfə seçilib");
+            }
+            masks.put(index >>> 6, prev | bit);
+        }
+        return masks;
+    }
+
+    /** Пустой массив слов для нового ивента. */
+    public List<Long> emptyWords() {
+        return new ArrayList<>(Collections.nCopies(wordCount(), 0L));
+    }
+
+    /** Перевод старого списка id мест в массив слов (миграция legacy-документов). */
+    public List<Long> toWords(Collection<String> seatIds) {
+        BitSet bits = new BitSet(size);
+        if (seatIds != null) {
+            for (String seatId : seatIds) {
+                int index = indexOf(seatId);
+                if (index >= 0) bits.set(index);
+            }
+        }
+        long[] raw = bits.toLongArray();
+        List<Long> words = emptyWords();
+        for (int i = 0; i < raw.length; i++) words.set(i, raw[i]);
+        return words;
+    }
+
+    /** Обратно в id мест — только там, где нужен явный список (статистика, отчёты). */
+    public List<String> seatIds(List<Long> words) {
+        List<String> result = new ArrayList<>();
+        BitSet bits = SeatGrid.bits(words);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result.add(seatIdOf(i));
+        }
+        return result;
+    }
+
+    public static BitSet bits(List<Long> words) {
+        if (words == null) return new BitSet();
+        long[] raw = new long[words.size()];
+        for (int i = 0; i < raw.length; i++) raw[i] = words.get(i) != null ? words.get(i) : 0L;
+        return BitSet.valueOf(raw);
+    }
+}
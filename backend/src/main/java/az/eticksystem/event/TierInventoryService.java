@@ -0,0 +1,122 @@
+package az.eticksystem.event;
+
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Остаток билетов по категориям для ивентов без схемы зала (GA).
+ * event_inventory.tierRemaining: tierId → сколько ещё можно продать.
+ * Списание — один условный $inc по всем категориям заказа: документ меняется только если
+ * каждой категории хватает, поэтому продать больше quantity невозможно даже при гонке.
+ * Остатки читаются одним запросом по _id, без подсчёта заказов.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TierInventoryService {
+
+    static final String TIER_REMAINING = "tierRemaining";
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Начальные остатки нового ивента: quantity каждой категории. */
+    public static Map<String, Integer> initialRemaining(List<TicketTier> tiers) {
+        Map<String, Integer> remaining = new LinkedHashMap<>();
+        if (tiers == null) return remaining;
+        for (TicketTier tier : tiers) {
+            if (tier.getTierId() != null) {
+                remaining.put(tier.getTierId(), tier.getQuantity() != null ? tier.getQuantity() : 0);
+            }
+        }
+        return remaining;
+    }
+
+    /** Списывает билеты заказа. 400 — неизвестная категория, 409 — не хватает билетов. */
+    public void reserve(String eventId, Collection<String> seatIds) {
+        Map<String, Integer> counts = countByTier(seatIds, true);
+
+        Criteria criteria = Criteria.where("_id").is(eventId);
+        Update   update   = new Update();
+        counts.forEach((tierId, n) -> {
+            criteria.and(TIER_REMAINING + "." + tierId).gte(n);
+            update.inc(TIER_REMAINING + "." + tierId, -n);
+        });
+
+        UpdateResult result = mongoTemplate.updateFirst(Query.query(criteria), update, EventInventory.class);
+        if (result.getModifiedCount() == 0) {
+            throw rejection(eventId, counts);
+        }
+    }
+
+    /** Возвращает билеты в остаток (компенсация при ошибке или admin-unbook). */
+    public void restore(String eventId, Collection<String> seatIds) {
+        Map<String, Integer> counts = countByTier(seatIds, false);
+        if (counts.isEmpty()) return;
+
+        Update update = new Update();
+        counts.forEach((tierId, n) -> update.inc(TIER_REMAINING + "." + tierId, n));
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(eventId).and(TIER_REMAINING).exists(true)),
+                update, EventInventory.class);
+    }
+
+    /** Остатки по категориям — один запрос по _id. */
+    public Map<String, Integer> remaining(String eventId) {
+        Query query = Query.query(Criteria.where("_id").is(eventId));
+        query.fields().include(TIER_REMAINING);
+
+        EventInventory inventory = mongoTemplate.findOne(query, EventInventory.class);
+        return inventory != null && inventory.getTierRemaining() != null ? inventory.getTierRemaining() : Map.of();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private Map<String, Integer> countByTier(Collection<String> seatIds, boolean strict) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (seatIds == null) return counts;
+
+        for (String seatId : seatIds) {
+            String tierId = SalesCounterService.tierOf(null, seatId);
+            if (tierId == null || tierId.isEmpty() || tierId.contains(".") || tierId.startsWith("$")) {
+                if (strict) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bilet növü tapılmadı");
+                continue;
+            }
+            counts.merge(tierId, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    // Условие не сработало — одним чтением выясняем причину для понятного ответа
+    private ResponseStatusException rejection(String eventId, Map<String, Integer> counts) {
+        Map<String, Integer> remaining = new HashMap<>(remaining(eventId));
+
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            Integer left = remaining.get(e.getKey());
+            if (left == null) {
+                return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bilet növü tapılmadı");
+            }
+            if (left < e.getValue()) {
+                log.warn("Tier sold out: event={} tier={} requested={} left={}", eventId, e.getKey(), e.getValue(), left);
+                return new ResponseStatusException(HttpStatus.CONFLICT, left <= 0
+                        ? "Bu bilet növü artıq satılıb."
+                        : "Bu bilet növündən yalnız " + left + " bilet qalıb.");
+            }
+        }
+        // Остатки успели вернуться между запросами — пусть клиент повторит
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Biletlər dəyişdi, zəhmət olmasa yenidən cəhd edin.");
+    }
+}
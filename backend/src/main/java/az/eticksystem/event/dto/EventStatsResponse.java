@@ -11,7 +11,9 @@ public class EventStatsResponse {
     private int    total;
     private int    views;
     private double conversionRate;
+    private int    scanned;
     private List<OrderSummary>    recentOrders;
+    private String                 recentOrdersCursor; // продолжение списка — GET /events/{id}/orders
     private List<SalesHistoryData> salesHistory;
     private List<String>           adminSeats;
 
@@ -0,0 +1,13 @@
+package az.eticksystem.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OrderSummaryPage {
+    private List<EventStatsResponse.OrderSummary> items;
+    private String                                nextCursor; // null — это последняя страница
+}
@@ -23,5 +23,6 @@ public class UpdateEventRequest {
     private String    coverImageUrl;
     private String    status;
     private List<FaqItem> faq;
+    private Object    ticketDesign;
 
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+package az.eticksystem.order;
+
+import az.eticksystem.event.DashboardEvent;
+import az.eticksystem.event.Event;
+import az.eticksystem.event.EventRepository;
+import az.eticksystem.event.EventStorageMigration;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Live-режим ивента: на время входа зрителей все билеты ивента держатся в памяти (LiveTicketIndex),
+ * скан отвечается без обращения к Mongo — поиск по примитивной хеш-таблице и CAS флага.
+ *
+ * Сохранение — write-behind: проход сначала пишется в журнал на диске, затем в очередь,
+ * которую планировщик пачками сбрасывает в Mongo через bulk. Журнал очищается только когда
+ * очередь пуста, поэтому каждый подтверждённый проход всегда есть либо в журнале, либо в Mongo.
+ * Журналы, оставшиеся после падения, применяются при старте как SmartLifecycle — до старта веб-сервера,
+ * иначе обычный путь скана через Mongo успел бы пропустить уже прошедший, но не сброшенный билет ещё раз.
+ * Места, освобождённые организатором во время live-режима (SEATS_UNBOOKED), снимаются и из индекса.
+ */
+@Slf4j
+@Service
+public class LiveScanService implements SmartLifecycle {
+
+    private static final int FLUSH_BATCH = 1000;
+
+    private final MongoTemplate   mongoTemplate;
+    private final EventRepository eventRepository;
+    private final Path            journalDir;
+    private final boolean         fsync;
+
+    private final ConcurrentMap<String, LiveEvent> live = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    public LiveScanService(MongoTemplate mongoTemplate,
+                           EventRepository eventRepository,
+                           @Value("${app.live-scan.journal-dir:data/live-scan}") String journalDir,
+                           @Value("${app.live-scan.fsync:false}") boolean fsync) {
+        this.mongoTemplate   = mongoTemplate;
+        this.eventRepository = eventRepository;
+        this.journalDir      = Paths.get(journalDir);
+        this.fsync           = fsync;
+    }
+
+    /** Результат скана из памяти. null в find — билета нет ни в одном live-ивенте. */
+    public record LiveScan(String eventId, boolean admitted, String seatId) {}
+
+    private record LiveEvent(LiveTicketIndex index, ScanJournal journal,
+                             ConcurrentLinkedQueue<PendingScan> queue) {}
+
+    private record PendingScan(String qrCode, LocalDateTime scannedAt, String gateId) {}
+
+    // ── Start / stop ──────────────────────────────────────────────────────
+
+    public synchronized int start(String eventId, String organizerEmail) {
+        checkAccess(eventId, organizerEmail);
+        LiveEvent existing = live.get(eventId);
+        if (existing != null) return existing.index().size();
+
+        // Сначала догоняем хвост прошлого запуска — индекс строится уже по актуальным данным
+        replay(journalFile(eventId));
+
+        Query query = Query.query(Criteria.where("eventId").is(eventId));
+        query.fields().include("tickets");
+
+        List<OrderTicket> tickets = new ArrayList<>();
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            orders.forEach(o -> {
+                if (o.getTickets() == null) return;
+                o.getTickets().stream().filter(t -> t.getQrCode() != null).forEach(tickets::add);
+            });
+        }
+
+        LiveTicketIndex index = LiveTicketIndex.build(eventId, tickets);
+        live.put(eventId, new LiveEvent(index,
+                new ScanJournal(journalFile(eventId), fsync), new ConcurrentLinkedQueue<>()));
+        log.info("Live scan mode started: event={} tickets={} by={}", eventId, index.size(), organizerEmail);
+        return index.size();
+    }
+
+    public synchronized void stop(String eventId, String organizerEmail) {
+        checkAccess(eventId, organizerEmail);
+        LiveEvent event = live.remove(eventId);
+        if (event == null) return;
+
+        flush(event);
+        event.journal().close();
+        log.info("Live scan mode stopped: event={} by={}", eventId, organizerEmail);
+    }
+
+    public boolean isLive(String eventId) {
+        return live.containsKey(eventId);
+    }
+
+    // ── Scan ──────────────────────────────────────────────────────────────
+
+    /** Скан из памяти. null — QR не относится ни к одному live-ивенту, нужен обычный путь через Mongo. */
+    public LiveScan scan(String qrCode, String gateId) {
+        for (LiveEvent event : live.values()) {
+            int ticket = event.index().find(qrCode);
+            if (ticket < 0) continue;
+
+            if (!event.index().markScanned(ticket)) {
+                return new LiveScan(event.index().eventId(), false, event.index().seatId(ticket));
+            }
+
+            PendingScan pending = new PendingScan(qrCode, LocalDateTime.now(), gateId);
+            // Журнал и очередь под одной блокировкой с очисткой журнала — см. flush
+            synchronized (event.journal()) {
+                try {
+                    event.journal().append(new ScanJournal.Entry(qrCode,
+                            pending.scannedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), gateId));
+                } catch (RuntimeException e) {
+                    // Без записи в журнал проход не подтверждаем — сканер повторит
+                    event.index().unmarkScanned(ticket);
+                    throw e;
+                }
+                event.queue().add(pending);
+            }
+            return new LiveScan(event.index().eventId(), true, event.index().seatId(ticket));
+        }
+        return null;
+    }
+
+    /** Организатор освободил места: их билеты удалены из заказов — в live-индексе они больше не проходят. */
+    @EventListener
+    public void on(DashboardEvent event) {
+        if (event.type() != DashboardEvent.Type.SEATS_UNBOOKED) return;
+        LiveEvent liveEvent = live.get(event.eventId());
+        if (liveEvent == null || !(event.data().get("seatIds") instanceof Collection<?> seats)) return;
+
+        Set<String> seatIds = seats.stream().map(String::valueOf).collect(Collectors.toSet());
+        int revoked = liveEvent.index().revokeSeats(seatIds);
+        log.info("Live scan tickets revoked: event={} seats={} tickets={}", event.eventId(), seatIds, revoked);
+    }
+
+    /** Проход, записанный в Mongo в обход памяти (пачка offline-сканера), — отмечаем и в индексе. */
+    public void markScanned(String eventId, String qrCode) {
+        LiveEvent event = live.get(eventId);
+        if (event == null) return;
+        int ticket = event.index().find(qrCode);
+        if (ticket >= 0) event.index().markScanned(ticket);
+    }
+
+    // ── Write-behind ──────────────────────────────────────────────────────
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${app.live-scan.flush-interval-ms:200}")
+    public void flush() {
+        live.values().forEach(this::flush);
+    }
+
+    /** Сбрасывает очередь ивента в Mongo (перед пачкой offline-сканов, чтобы сравнение шло с актуальными данными). */
+    public void flush(String eventId) {
+        LiveEvent event = live.get(eventId);
+        if (event != null) flush(event);
+    }
+
+    private void flush(LiveEvent event) {
+        synchronized (event.queue()) {
+            List<PendingScan> batch = new ArrayList<>(FLUSH_BATCH);
+            while (!event.queue().isEmpty()) {
+                batch.clear();
+                for (PendingScan p : event.queue()) {
+                    batch.add(p);
+                    if (batch.size() == FLUSH_BATCH) break;
+                }
+                try {
+                    persist(event.index().eventId(), batch);
+                } catch (RuntimeException e) {
+                    // Проходы остаются в очереди и в журнале — повторим следующим сбросом
+                    log.error("Live scan flush failed: event={} pending={} {}",
+                            event.index().eventId(), event.queue().size(), e.getMessage());
+                    return;
+                }
+                for (int i = 0; i < batch.size(); i++) event.queue().poll();
+            }
+
+            synchronized (event.journal()) {
+                if (event.queue().isEmpty()) event.journal().truncate();
+            }
+        }
+    }
+
+    private void persist(String eventId, List<PendingScan> batch) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        for (PendingScan scan : batch) {
+            bulk.updateOne(scanQuery(eventId, scan.qrCode()), scanUpdate(scan.scannedAt(), scan.gateId()));
+        }
+        bulk.execute();
+    }
+
+    // ── Crash replay ──────────────────────────────────────────────────────
+
+    @Override
+    public void start() {
+        if (Files.isDirectory(journalDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(journalDir, "*.journal")) {
+                for (Path file : files) replay(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Scan journal dir unreadable: " + journalDir, e);
+            }
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return EventStorageMigration.PHASE;
+    }
+
+    private void replay(Path file) {
+        if (!Files.exists(file)) return;
+        String eventId = file.getFileName().toString().replace(".journal", "");
+        try {
+            List<ScanJournal.Entry> entries = ScanJournal.read(file);
+            if (!entries.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+                for (ScanJournal.Entry e : entries) {
+                    LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(e.scannedAt()), ZoneId.systemDefault());
+                    bulk.updateOne(scanQuery(eventId, e.qrCode()), scanUpdate(at, e.gateId()));
+                }
+                bulk.execute();
+            }
+            Files.delete(file);
+            log.info("Scan journal replayed: event={} scans={}", eventId, entries.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Scan journal replay failed: {} {}", file, e.getMessage(), e);
+        }
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    // Условие scanned=false — повторное применение (replay после частичного сброса) ничего не ломает
+    private Query scanQuery(String eventId, String qrCode) {
+        return Query.query(Criteria.where("eventId").is(eventId).and("tickets").elemMatch(
+                Criteria.where("qrCode").is(qrCode).and("scanned").is(false)));
+    }
+
+    private Update scanUpdate(LocalDateTime scannedAt, String gateId) {
+        return new Update()
+                .set("tickets.$.scanned",   true)
+                .set("tickets.$.scannedAt", scannedAt)
+                .set("tickets.$.gateId",    gateId);
+    }
+
+    private Path journalFile(String eventId) {
+        if (!eventId.matches("[A-Za-z0-9_-]+")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Yanlış tədbir ID");
+        }
+        return journalDir.resolve(eventId + ".journal");
+    }
+
+    private void checkAccess(String eventId, String organizerEmail) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found"));
+        if (!event.getOrganizerId().equals(organizerEmail)) {
+            log.warn("Unauthorized live scan action: event={} by={}", eventId, organizerEmail);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package az.eticksystem.order;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Билеты одного ивента в памяти: 64-битный хеш QR → номер билета.
+ * Открытая адресация на примитивных массивах (без Map/boxing), состояние прохода —
+ * AtomicIntegerArray, отметка делается одним CAS 0 → 1 без блокировок.
+ * Набор билетов фиксируется при построении; меняется только состояние прохода —
+ * в том числе REVOKED для билетов, снятых организатором уже после построения.
+ */
+final class LiveTicketIndex {
+
+    private static final int SCANNED = 1;
+    private static final int REVOKED = 2;
+
+    private final String eventId;
+
+    // Хеш-таблица: ключ → номер билета + 1 (0 — пустая ячейка)
+    private final long[] keys;
+    private final int[]  slots;
+    private final int    mask;
+
+    // Данные билетов по номеру
+    private final String[]           qrCodes;
+    private final String[]           seatIds;
+    private final AtomicIntegerArray scanned;
+
+    private LiveTicketIndex(String eventId, int capacity, int tickets) {
+        this.eventId = eventId;
+        this.keys    = new long[capacity];
+        this.slots   = new int[capacity];
+        this.mask    = capacity - 1;
+        this.qrCodes = new String[tickets];
+        this.seatIds = new String[tickets];
+        this.scanned = new AtomicIntegerArray(tickets);
+    }
+
+    static LiveTicketIndex build(String eventId, List<OrderTicket> tickets) {
+        // Заполнение не больше 50% — короткие цепочки пробинга
+        int capacity = Integer.highestOneBit(Math.max(16, tickets.size() * 2) - 1) << 1;
+        LiveTicketIndex index = new LiveTicketIndex(eventId, capacity, tickets.size());
+
+        for (int i = 0; i < tickets.size(); i++) {
+            OrderTicket t = tickets.get(i);
+            index.qrCodes[i] = t.getQrCode();
+            index.seatIds[i] = t.getSeatId();
+            if (t.isScanned()) index.scanned.set(i, SCANNED);
+
+            int pos = (int) hash(t.getQrCode()) & index.mask;
+            while (index.slots[pos] != 0) pos = (pos + 1) & index.mask;
+            index.keys[pos]  = hash(t.getQrCode());
+            index.slots[pos] = i + 1;
+        }
+        return index;
+    }
+
+    String eventId() { return eventId; }
+    int    size()    { return qrCodes.length; }
+
+    /** Номер билета или -1 (нет такого или снят). Совпадение хеша дополнительно сверяется по самой строке QR. */
+    int find(String qrCode) {
+        long key = hash(qrCode);
+        for (int pos = (int) key & mask; slots[pos] != 0; pos = (pos + 1) & mask) {
+            int ticket = slots[pos] - 1;
+            if (keys[pos] == key && qrCodes[ticket].equals(qrCode)) {
+                return scanned.get(ticket) == REVOKED ? -1 : ticket;
+            }
+        }
+        return -1;
+    }
+
+    /** true — этот вызов первым отметил билет; false — билет уже прошёл (или снят). */
+    boolean markScanned(int ticket) {
+        return scanned.compareAndSet(ticket, 0, SCANNED);
+    }
+
+    /** Откат отметки, если проход не удалось записать в журнал. */
+    void unmarkScanned(int ticket) {
+        scanned.compareAndSet(ticket, SCANNED, 0);
+    }
+
+    /** Снимает билеты мест (организатор освободил места): find их больше не находит. Возвращает число снятых. */
+    int revokeSeats(Collection<String> seats) {
+        int revoked = 0;
+        for (int i = 0; i < seatIds.length; i++) {
+            if (seatIds[i] != null && seats.contains(seatIds[i]) && scanned.getAndSet(i, REVOKED) != REVOKED) revoked++;
+        }
+        return revoked;
+    }
+
+    String qrCode(int ticket) { return qrCodes[ticket]; }
+    String seatId(int ticket) { return seatIds[ticket]; }
+
+    /** Первые 8 байт SHA-256 — тот же хеш, что в манифесте сканеров. */
+    static long hash(String qrCode) {
+        byte[] d = sha256(qrCode.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; i++) h = (h << 8) | (d[i] & 0xFF);
+        return h;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -15,6 +16,13 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "orders")
+// Сканер ищет заказ по QR билета — без индекса это полный проход по orders
+@CompoundIndex(name = "tickets_qrCode", def = "{'tickets.qrCode': 1}")
+// Список заказов организатора с фильтром по статусу или промокоду — тот же порядок, что у OrderCursor
+@CompoundIndex(name = "eventId_status_createdAt_id",    def = "{'eventId': 1, 'status': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "eventId_promoCode_createdAt_id", def = "{'eventId': 1, 'promoCode': 1, 'createdAt': -1, '_id': -1}")
+// Лента заказов ивента: keyset-пагинация по (createdAt, _id) от новых к старым — OrderCursor
+@CompoundIndex(name = "eventId_createdAt_id", def = "{'eventId': 1, 'createdAt': -1, '_id': -1}")
 public class Order {
 
     @Id
@@ -3,12 +3,21 @@ package az.eticksystem.order;
 import az.eticksystem.order.dto.AdminOrderRequest;
 import az.eticksystem.order.dto.AdminUnbookRequest;
 import az.eticksystem.order.dto.CreateOrderRequest;
-import az.eticksystem.order.dto.OrderResponse;
+import az.eticksystem.order.dto.HoldRequest;
+import az.eticksystem.order.dto.HoldResponse;
+import az.eticksystem.order.dto.OrderFilter;
+import az.eticksystem.order.dto.OrderPage;
+import az.eticksystem.order.dto.ScanBatchRequest;
+import az.eticksystem.order.dto.ScanResult;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -19,20 +28,85 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class OrderController {
 
-    private final OrderService orderService;
+    private final OrderService    orderService;
+    private final SeatHoldService seatHoldService;
+    private final ScanSyncService scanSyncService;
+    private final LiveScanService liveScanService;
 
     @PostMapping("/create")
     public ResponseEntity<Order> createOrder(@RequestBody CreateOrderRequest request) {
         return ResponseEntity.ok(orderService.createOrder(request));
     }
 
+    // Клиент брони — IP (за прокси — из X-Forwarded-For, server.forward-headers-strategy)
+    @PostMapping("/hold")
+    public ResponseEntity<HoldResponse> holdSeats(@RequestBody HoldRequest request, HttpServletRequest http) {
+        return ResponseEntity.ok(seatHoldService.hold(request.getEventId(), request.getSeatIds(), http.getRemoteAddr()));
+    }
+
+    @DeleteMapping("/hold/{holdId}")
+    public ResponseEntity<Void> releaseHold(@PathVariable String holdId,
+                                            @RequestHeader(value = "X-Hold-Secret", required = false) String secret) {
+        seatHoldService.cancel(holdId, secret);
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/scan/{qrCode}")
-    public ResponseEntity<Map<String, Object>> scanTicket(@PathVariable String qrCode) {
+    public ResponseEntity<Map<String, Object>> scanTicket(
+            @PathVariable String qrCode,
+            @RequestParam(required = false) String gateId,
+            Authentication auth) {
+        // Вход не указан — записываем, кто сканировал
+        String gate = gateId != null && !gateId.isBlank() ? gateId : auth.getName();
         // GlobalExceptionHandler поймает ResponseStatusException — try/catch не нужен
-        String result = orderService.scanTicket(qrCode);
+        String result = orderService.scanTicket(qrCode, gate);
         return ResponseEntity.ok(Map.of("success", true, "message", result));
     }
 
+    // ── Offline-сканеры ───────────────────────────────────────────────────
+
+    @GetMapping("/scan/manifest/{eventId}")
+    public ResponseEntity<StreamingResponseBody> scanManifest(
+            @PathVariable String eventId,
+            Authentication auth) {
+        scanSyncService.checkAccess(eventId, auth.getName());
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(out -> scanSyncService.writeManifest(eventId, out));
+    }
+
+    @GetMapping("/scan/manifest-key")
+    public ResponseEntity<Map<String, String>> scanManifestKey() {
+        return ResponseEntity.ok(Map.of("algorithm", "Ed25519", "publicKey", scanSyncService.publicKey()));
+    }
+
+    @PostMapping("/scan/batch")
+    public ResponseEntity<List<ScanResult>> scanBatch(
+            @RequestBody ScanBatchRequest request,
+            Authentication auth) {
+        if (request.getGateId() == null || request.getGateId().isBlank()) request.setGateId(auth.getName());
+        return ResponseEntity.ok(scanSyncService.applyBatch(request, auth.getName()));
+    }
+
+    // ── Live-режим (билеты ивента в памяти на время входа) ────────────────
+
+    @PostMapping("/scan/live/{eventId}")
+    public ResponseEntity<Map<String, Object>> startLiveScan(
+            @PathVariable String eventId,
+            Authentication auth) {
+        int tickets = liveScanService.start(eventId, auth.getName());
+        return ResponseEntity.ok(Map.of("live", true, "tickets", tickets));
+    }
+
+    @DeleteMapping("/scan/live/{eventId}")
+    public ResponseEntity<Map<String, Object>> stopLiveScan(
+            @PathVariable String eventId,
+            Authentication auth) {
+        liveScanService.stop(eventId, auth.getName());
+        return ResponseEntity.ok(Map.of("live", false));
+    }
+
     @PostMapping("/admin-book")
     public ResponseEntity<Order> adminBook(
             @RequestBody AdminOrderRequest request,
@@ -48,8 +122,9 @@ public class OrderController {
         return ResponseEntity.ok(Map.of("success", true, "message", "Unbooked successfully"));
     }
 
-    @GetMapping("/organizer-all")
-    public ResponseEntity<List<OrderResponse>> getAllOrganizerOrders(Authentication auth) {
-        return ResponseEntity.ok(orderService.getAllOrganizerOrders(auth.getName()));
+    /** Заказы всех ивентов организатора: фильтры и курсор — query-параметры OrderFilter. */
+    @GetMapping("/organizer")
+    public ResponseEntity<OrderPage> getOrganizerOrders(OrderFilter filter, Authentication auth) {
+        return ResponseEntity.ok(orderService.getOrganizerOrders(auth.getName(), filter));
     }
 }
\ No newline at end of file
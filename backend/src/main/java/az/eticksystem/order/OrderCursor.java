@@ -0,0 +1,75 @@
+package az.eticksystem.order;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Курсор keyset-пагинации заказов по (createdAt, _id), от новых к старым.
+ * Клиенту отдаётся непрозрачной строкой; следующая страница — заказы строго «старше» курсора,
+ * поэтому запрос идёт по индексу без skip и не зависит от глубины листания.
+ */
+public record OrderCursor(LocalDateTime createdAt, String id) {
+
+    /** Страница заказов и курсор следующей (null — страница последняя). */
+    public record Page(List<Order> orders, String nextCursor) {}
+
+    /** Порядок выдачи, совпадающий с курсором (индекс eventId_createdAt_id). */
+    public static final Sort SORT = Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "_id"));
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.getCreatedAt(), order.getId());
+    }
+
+    /** null или пустая строка — первая страница. */
+    public static OrderCursor parse(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, sep));
+            return new OrderCursor(
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()),
+                    raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Yanlış səhifə kursoru");
+        }
+    }
+
+    public String encode() {
+        // Старые заказы без даты идут последними — курсор на них даёт пустую страницу
+        long millis = createdAt != null ? createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((millis + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Страница size заказов после cursor; лишний (size+1)-й показывает, есть ли продолжение — см. trim. */
+    public static Query pageQuery(Criteria criteria, String cursor, int size) {
+        OrderCursor after = parse(cursor);
+        Criteria where = after != null ? new Criteria().andOperator(criteria, after.after()) : criteria;
+        return Query.query(where).with(SORT).limit(size + 1);
+    }
+
+    /** Отрезает лишний заказ страницы и возвращает курсор продолжения (null — страница последняя). */
+    public static String trim(List<Order> orders, int size) {
+        if (orders.size() <= size) return null;
+        orders.subList(size, orders.size()).clear();
+        return of(orders.get(size - 1)).encode();
+    }
+
+    /** Условие «после курсора» в порядке SORT. */
+    public Criteria after() {
+        return new Criteria().orOperator(
+                Criteria.where("createdAt").lt(createdAt),
+                Criteria.where("createdAt").is(createdAt).and("_id").lt(id));
+    }
+}
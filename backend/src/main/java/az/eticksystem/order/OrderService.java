@@ -1,19 +1,33 @@
 package az.eticksystem.order;
 
+import az.eticksystem.event.DashboardEvent;
 import az.eticksystem.event.Event;
 import az.eticksystem.event.EventRepository;
+import az.eticksystem.event.SalesRollupService;
+import az.eticksystem.event.SeatClaimService;
 import az.eticksystem.order.dto.AdminOrderRequest;
 import az.eticksystem.order.dto.CreateOrderRequest;
+import az.eticksystem.order.dto.OrderFilter;
+import az.eticksystem.order.dto.OrderPage;
 import az.eticksystem.order.dto.OrderResponse;
+import az.eticksystem.utils.TicketDeliveryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,9 +36,18 @@ import java.util.stream.Collectors;
 public class OrderService {
 
     private static final Set<String> SUCCESS_STATUSES = Set.of("SUCCESS", "Ödənilib");
-
-    private final OrderRepository orderRepository;
-    private final EventRepository eventRepository;
+    private static final DateTimeFormatter SCAN_FMT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private final OrderRepository           orderRepository;
+    private final EventRepository           eventRepository;
+    private final SeatClaimService          seatClaimService;
+    private final SeatHoldService           seatHoldService;
+    private final LiveScanService           liveScanService;
+    private final SalesRollupService        salesRollupService;
+    private final TicketDeliveryService     ticketDelivery;
+    private final MongoTemplate             mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ── Public order ──────────────────────────────────────────────────────
 
@@ -52,13 +75,12 @@ public class OrderService {
                     "Limit aşıldı! Maksimum " + maxTickets + " bilet. Artıq " + alreadyBought + " bilet almısınız.");
         }
 
-        if (event.getSoldSeats() == null) event.setSoldSeats(new ArrayList<>());
-
-        for (String seatId : request.getSeatIds()) {
-            if (event.getSoldSeats().contains(seatId)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        "Oturacaq artıq satılıb: " + seatId);
-            }
+        // Места из брони уже захвачены — повторно не проверяем, только считаем продажу.
+        // Без брони — атомарный захват мест, конфликт сразу даёт 409
+        if (seatHoldService.consume(request.getHoldId(), request.getHoldSecret(), event.getId(), request.getSeatIds())) {
+            seatClaimService.addSold(event.getId(), request.getSeatIds());
+        } else {
+            seatClaimService.claim(event.getId(), request.getSeatIds());
         }
 
         List<OrderTicket> tickets = request.getSeatIds().stream().map(seatId -> {
@@ -81,36 +103,54 @@ public class OrderService {
                 .tickets(tickets)
                 .build();
 
-        Order saved = orderRepository.save(order);
-
-        event.getSoldSeats().addAll(request.getSeatIds());
-        event.setSold((event.getSold() == null ? 0 : event.getSold()) + request.getSeatIds().size());
-        eventRepository.save(event);
+        Order saved = saveOrReleaseSeats(order, event.getId());
 
+        salesRollupService.recordOrder(saved);
         log.info("Order created: id={} event={} tickets={}", saved.getId(), event.getId(), requested);
+        publishOrderCreated(saved);
+        // Письмо с билетами — в outbox вместе с заказом; PDF отрисует и приложит сервер
+        ticketDelivery.enqueue(saved, event, request.getLocale());
         return saved;
     }
 
     // ── Scan ──────────────────────────────────────────────────────────────
 
-    public String scanTicket(String qrCode) {
-        Order order = orderRepository.findByTickets_QrCode(qrCode)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Bilet tapılmadı və ya saxtadır!"));
+    /**
+     * Один условный update по индексу tickets.qrCode: scanned false → true только у этого билета.
+     * Два входа, сканирующие один билет одновременно, не пройдут оба — второй получит «уже использован».
+     */
+    public String scanTicket(String qrCode, String gateId) {
+        // Ивент в live-режиме — ответ из памяти, Mongo обновится write-behind
+        LiveScanService.LiveScan liveScan = liveScanService.scan(qrCode, gateId);
+        if (liveScan != null) {
+            if (!liveScan.admitted()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "DİQQƏT: Bu bilet artıq istifadə olunub!");
+            }
+            publishScanned(liveScan.eventId(), liveScan.seatId(), gateId);
+            return "Uğurlu! Girişə icazə verildi. (Yer: " + liveScan.seatId() + ")";
+        }
 
-        OrderTicket ticket = order.getTickets().stream()
-                .filter(t -> t.getQrCode().equals(qrCode))
-                .findFirst()
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Bilet tapılmadı!"));
+        LocalDateTime now = LocalDateTime.now();
 
-        if (ticket.isScanned()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "DİQQƏT: Bu bilet artıq istifadə olunub!");
+        Query query = Query.query(Criteria.where("tickets").elemMatch(
+                Criteria.where("qrCode").is(qrCode).and("scanned").is(false)));
+        query.fields().include("eventId").elemMatch("tickets", Criteria.where("qrCode").is(qrCode));
+
+        Update update = new Update()
+                .set("tickets.$.scanned",   true)
+                .set("tickets.$.scannedAt", now)
+                .set("tickets.$.gateId",    gateId);
+
+        Order order = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Order.class);
+
+        if (order == null) {
+            throw scanRejection(qrCode);
         }
 
-        ticket.setScanned(true);
-        orderRepository.save(order);
-        log.info("Ticket scanned: qr={} seat={}", qrCode, ticket.getSeatId());
+        OrderTicket ticket = order.getTickets().get(0);
+        log.info("Ticket scanned: qr={} seat={} gate={}", qrCode, ticket.getSeatId(), gateId);
+        publishScanned(order.getEventId(), ticket.getSeatId(), gateId);
         return "Uğurlu! Girişə icazə verildi. (Yer: " + ticket.getSeatId() + ")";
     }
 
@@ -120,22 +160,13 @@ public class OrderService {
         Event event = findEventOrThrow(request.getEventId());
         checkOwnership(event, organizerEmail);
 
+        // GA-блок тоже списывает остаток категории — организатор не может выйти за quantity
         if (Boolean.TRUE.equals(event.getIsReservedSeating())) {
-            if (event.getSoldSeats() == null) event.setSoldSeats(new ArrayList<>());
-            for (String seatId : request.getSeatIds()) {
-                if (event.getSoldSeats().contains(seatId)) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                            "Oturacaq artıq tutulub: " + seatId);
-                }
-            }
-            event.getSoldSeats().addAll(request.getSeatIds());
-            if (event.getAdminSeats() == null) event.setAdminSeats(new ArrayList<>());
-            event.getAdminSeats().addAll(request.getSeatIds());
+            seatClaimService.claimAdmin(event.getId(), request.getSeatIds());
+        } else {
+            seatClaimService.claim(event.getId(), request.getSeatIds());
         }
 
-        event.setSold((event.getSold() == null ? 0 : event.getSold()) + request.getSeatIds().size());
-        eventRepository.save(event);
-
         // Используем email организатора вместо захардкоженного admin@tickit.az
         String customerEmail = "admin@tickit.az".equals(request.getCustomerEmail())
                 ? organizerEmail : request.getCustomerEmail();
@@ -164,8 +195,10 @@ public class OrderService {
                 .tickets(tickets)
                 .build();
 
-        Order saved = orderRepository.save(order);
+        Order saved = saveOrReleaseSeats(order, event.getId());
+        salesRollupService.recordOrder(saved);
         log.info("Admin order created: event={} seats={} by={}", event.getId(), request.getSeatIds(), organizerEmail);
+        eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.SEATS_BOOKED, event.getId(), orderData(saved)));
         return saved;
     }
 
@@ -196,34 +229,53 @@ public class OrderService {
                     orderToUpdate.getTickets().removeIf(t -> seatId.equals(t.getSeatId()));
                 }
 
-                if (orderToUpdate.getSeatIds().isEmpty()) {
+                boolean removed = orderToUpdate.getSeatIds().isEmpty();
+                if (removed) {
                     orderRepository.delete(orderToUpdate);
                     eventOrders.remove(orderToUpdate);
                 } else {
                     orderRepository.save(orderToUpdate);
                 }
+                salesRollupService.recordUnbook(orderToUpdate, List.of(seatId), removed);
             }
-
-            if (event.getSoldSeats()  != null) event.getSoldSeats().remove(seatId);
-            if (event.getAdminSeats() != null) event.getAdminSeats().remove(seatId);
-            event.setSold(Math.max(0, (event.getSold() == null ? 0 : event.getSold()) - 1));
         }
 
-        eventRepository.save(event);
+        // Снимаем места точечным $pull — сам документ ивента не перезаписываем
+        seatClaimService.release(eventId, seatIds);
         log.info("Admin seats unbooked: event={} seats={} by={}", eventId, seatIds, organizerEmail);
+        eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.SEATS_UNBOOKED, eventId,
+                Map.of("seatIds", seatIds)));
     }
 
     // ── Organizer orders list ─────────────────────────────────────────────
 
-    public List<OrderResponse> getAllOrganizerOrders(String organizerEmail) {
-        List<Event> myEvents = eventRepository.findByOrganizerId(organizerEmail);
-        List<String> eventIds = myEvents.stream().map(Event::getId).collect(Collectors.toList());
-
-        // findByEventIdIn вместо findAll() + filter в памяти
+    /**
+     * Заказы организатора страницами (keyset по createdAt, _id) с фильтрами на стороне Mongo.
+     * Память сервера не зависит от числа заказов: читается только size + 1 документ без билетов.
+     */
+    public OrderPage getOrganizerOrders(String organizerEmail, OrderFilter filter) {
+        List<Event> myEvents = eventRepository.findByOrganizerIdAndDeletedFalse(organizerEmail);
         Map<String, String> eventNames = myEvents.stream()
                 .collect(Collectors.toMap(Event::getId, Event::getTitle));
 
-        return orderRepository.findByEventIdIn(eventIds).stream()
+        List<String> eventIds;
+        if (filter.getEventId() != null && !filter.getEventId().isBlank()) {
+            if (!eventNames.containsKey(filter.getEventId())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+            }
+            eventIds = List.of(filter.getEventId());
+        } else {
+            eventIds = new ArrayList<>(eventNames.keySet());
+        }
+
+        int size = Math.max(1, Math.min(filter.getLimit(), MAX_PAGE_SIZE));
+        Query query = OrderCursor.pageQuery(organizerCriteria(eventIds, filter), filter.getCursor(), size);
+        query.fields().exclude("tickets");
+
+        List<Order> orders = mongoTemplate.find(query, Order.class);
+        String next = OrderCursor.trim(orders, size);
+
+        List<OrderResponse> items = orders.stream()
                 .map(o -> OrderResponse.builder()
                         .id(o.getId().substring(Math.max(0, o.getId().length() - 6)).toUpperCase())
                         .eventName(eventNames.getOrDefault(o.getEventId(), "Naməlum"))
@@ -236,9 +288,41 @@ public class OrderService {
                         .promoCode(o.getPromoCode())
                         .isInvite(o.getTotalAmount() == null || o.getTotalAmount() == 0)
                         .build())
-                .sorted(Comparator.comparing(OrderResponse::getDate,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
                 .collect(Collectors.toList());
+        return new OrderPage(items, next);
+    }
+
+    // Первые условия — eventId, status/promoCode, createdAt — совпадают с префиксами индексов Order
+    private Criteria organizerCriteria(List<String> eventIds, OrderFilter filter) {
+        List<Criteria> and = new ArrayList<>();
+        and.add(Criteria.where("eventId").in(eventIds));
+
+        if (filter.getStatus() != null && !filter.getStatus().isBlank()) {
+            and.add(Criteria.where("status").is(filter.getStatus()));
+        }
+        if (filter.getPromoCode() != null && !filter.getPromoCode().isBlank()) {
+            and.add(Criteria.where("promoCode").is(filter.getPromoCode().trim().toUpperCase()));
+        }
+        if (filter.getFrom() != null) {
+            and.add(Criteria.where("createdAt").gte(filter.getFrom().atStartOfDay()));
+        }
+        if (filter.getTo() != null) {
+            and.add(Criteria.where("createdAt").lt(filter.getTo().plusDays(1).atStartOfDay()));
+        }
+        if ("paid".equalsIgnoreCase(filter.getKind())) {
+            and.add(Criteria.where("totalAmount").gt(0));
+        } else if ("invite".equalsIgnoreCase(filter.getKind())) {
+            and.add(new Criteria().orOperator(
+                    Criteria.where("totalAmount").is(null), Criteria.where("totalAmount").is(0)));
+        }
+        if (filter.getQ() != null && !filter.getQ().isBlank()) {
+            // Поиск по подстроке индексом не покрывается — ограничен уже отобранными ивентами организатора
+            String q = Pattern.quote(filter.getQ().trim());
+            and.add(new Criteria().orOperator(
+                    Criteria.where("customerName").regex(q, "i"),
+                    Criteria.where("customerEmail").regex(q, "i")));
+        }
+        return new Criteria().andOperator(and);
     }
 
     // ── Private helpers ───────────────────────────────────────────────────
@@ -248,6 +332,61 @@ public class OrderService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found"));
     }
 
+    // Если заказ не сохранился — возвращаем захваченные места, иначе они «зависнут» проданными
+    private Order saveOrReleaseSeats(Order order, String eventId) {
+        try {
+            return orderRepository.save(order);
+        } catch (RuntimeException e) {
+            seatClaimService.release(eventId, order.getSeatIds());
+            throw e;
+        }
+    }
+
+    // Дельта для дашбордов и EventStatsCache: сколько продано, на какую сумму и строка списка заказов
+    private void publishOrderCreated(Order order) {
+        eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.ORDER_CREATED, order.getEventId(), orderData(order)));
+    }
+
+    private Map<String, Object> orderData(Order order) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("orderId",        order.getId());
+        data.put("seatIds",        order.getSeatIds());
+        data.put("tickets",        order.getSeatIds().size());
+        data.put("amount",         order.getTotalAmount() != null ? order.getTotalAmount() : 0.0);
+        data.put("originalAmount", order.getOriginalAmount());
+        data.put("promoCode",      order.getPromoCode());
+        data.put("customer",       order.getCustomerName());
+        data.put("email",          order.getCustomerEmail());
+        data.put("phone",          order.getCustomerPhone());
+        data.put("date",           order.getCreatedAt());
+        return data;
+    }
+
+    private void publishScanned(String eventId, String seatId, String gateId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("count",  1);
+        data.put("seatId", seatId);
+        data.put("gateId", gateId);
+        eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.TICKET_SCANNED, eventId, data));
+    }
+
+    // Условие не сработало: билета нет вовсе или он уже прошёл контроль
+    private ResponseStatusException scanRejection(String qrCode) {
+        Query query = Query.query(Criteria.where("tickets.qrCode").is(qrCode));
+        query.fields().elemMatch("tickets", Criteria.where("qrCode").is(qrCode));
+
+        Order order = mongoTemplate.findOne(query, Order.class);
+        if (order == null || order.getTickets() == null || order.getTickets().isEmpty()) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Bilet tapılmadı və ya saxtadır!");
+        }
+
+        OrderTicket ticket = order.getTickets().get(0);
+        log.warn("Repeated scan: qr={} firstAt={} gate={}", qrCode, ticket.getScannedAt(), ticket.getGateId());
+        String when = ticket.getScannedAt() != null ? " (" + ticket.getScannedAt().format(SCAN_FMT) + ")" : "";
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "DİQQƏT: Bu bilet artıq istifadə olunub!" + when);
+    }
+
     private void checkOwnership(Event event, String organizerEmail) {
         if (!event.getOrganizerId().equals(organizerEmail)) {
             log.warn("Unauthorized order action: event={} by={}", event.getId(), organizerEmail);
@@ -2,10 +2,16 @@ package az.eticksystem.order;
 
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Data
 public class OrderTicket {
     private String  seatId;
     private String  qrCode;
     private String  ticketNumber;
     private boolean scanned; // единственное поле — без дублирования isScanned/used
+
+    /** Когда и на каком входе билет прошёл контроль */
+    private LocalDateTime scannedAt;
+    private String        gateId;
 }
\ No newline at end of file
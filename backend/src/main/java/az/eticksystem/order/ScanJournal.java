@@ -0,0 +1,94 @@
+package az.eticksystem.order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал проходов live-режима: каждая отметка дописывается в файл до ответа сканеру.
+ * Пока write-behind очередь не сохранила проходы в Mongo, журнал — единственная их копия;
+ * после падения процесса его записи повторно применяются при старте.
+ * Формат строки: qrCode \t epochMs \t gateId.
+ */
+final class ScanJournal implements AutoCloseable {
+
+    record Entry(String qrCode, long scannedAt, String gateId) {}
+
+    private final Path        file;
+    private final FileChannel channel;
+    private final boolean     fsync;
+
+    ScanJournal(Path file, boolean fsync) {
+        this.file  = file;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(file.getParent());
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open scan journal " + file, e);
+        }
+    }
+
+    /**
+     * Запись попадает в page cache ОС — переживает падение процесса.
+     * fsync = true дополнительно переживает отключение питания, ценой задержки диска.
+     */
+    void append(Entry entry) {
+        String line = entry.qrCode() + '\t' + entry.scannedAt() + '\t' + clean(entry.gateId()) + '\n';
+        ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buf.hasRemaining()) channel.write(buf);
+            if (fsync) channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Scan journal write failed: " + file, e);
+        }
+    }
+
+    /** Всё в журнале уже сохранено в Mongo — начинаем с пустого файла. */
+    void truncate() {
+        try {
+            channel.truncate(0);
+            if (fsync) channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Scan journal truncate failed: " + file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Файл остаётся на диске — его разберёт replay при следующем старте
+        }
+    }
+
+    /** Читает журнал целиком; оборванная последняя строка (падение во время записи) пропускается. */
+    static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        int start = 0;
+        for (int end = content.indexOf('\n'); end >= 0; start = end + 1, end = content.indexOf('\n', start)) {
+            String[] parts = content.substring(start, end).split("\t", -1);
+            if (parts.length != 3) continue;
+            try {
+                entries.add(new Entry(parts[0], Long.parseLong(parts[1]), parts[2].isEmpty() ? null : parts[2]));
+            } catch (NumberFormatException ignored) {
+                // битая строка — пропускаем
+            }
+        }
+        return entries;
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ');
+    }
+}
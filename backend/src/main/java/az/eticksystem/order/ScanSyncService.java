@@ -0,0 +1,276 @@
+package az.eticksystem.order;
+
+import az.eticksystem.event.DashboardEvent;
+import az.eticksystem.event.Event;
+import az.eticksystem.event.EventRepository;
+import az.eticksystem.order.dto.ScanBatchRequest;
+import az.eticksystem.order.dto.ScanResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Синхронизация сканеров на входе, которые работают без постоянной сети.
+ *
+ * Манифест — текстовый поток "hash,scanned" по каждому билету ивента, подписанный Ed25519.
+ * Устройство хранит его локально, сверяет QR по SHA-256 и пускает без запроса к серверу;
+ * публичный ключ для проверки подписи отдаёт /orders/scan/manifest-key.
+ *
+ * Накопленные проходы устройство отправляет пачкой. Повторы разрешаются на сервере:
+ * побеждает самый ранний проход (по времени на устройстве), даже если он пришёл позже.
+ */
+@Slf4j
+@Service
+public class ScanSyncService {
+
+    private static final int MAX_BATCH  = 5000;
+    private static final int HASH_BYTES = 8; // 64 бита — коллизии внутри одного ивента практически исключены
+
+    private final MongoTemplate             mongoTemplate;
+    private final EventRepository           eventRepository;
+    private final LiveScanService           liveScanService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final KeyPair                   signingKey;
+
+    public ScanSyncService(MongoTemplate mongoTemplate,
+                           EventRepository eventRepository,
+                           LiveScanService liveScanService,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${app.scanner.manifest-private-key:}") String privateKey,
+                           @Value("${app.scanner.manifest-public-key:}")  String publicKey) {
+        this.mongoTemplate   = mongoTemplate;
+        this.eventRepository = eventRepository;
+        this.liveScanService = liveScanService;
+        this.eventPublisher  = eventPublisher;
+        this.signingKey      = loadKey(privateKey, publicKey);
+    }
+
+    // ── Manifest ──────────────────────────────────────────────────────────
+
+    public void checkAccess(String eventId, String organizerEmail) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found"));
+        if (!event.getOrganizerId().equals(organizerEmail)) {
+            log.warn("Unauthorized scanner sync: event={} by={}", eventId, organizerEmail);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+    }
+
+    /**
+     * Пишет манифест прямо в ответ, заказ за заказом — в памяти не собирается.
+     * Формат:
+     *   # eticksystem-manifest v1 event={id} generatedAt={epochMs}
+     *   {первые 8 байт SHA-256(qr) в hex},{0|1}
+     *   ...
+     *   # sig={base64 Ed25519 всех предыдущих байт}
+     */
+    public void writeManifest(String eventId, OutputStream rawOut) throws IOException {
+        liveScanService.flush(eventId);
+        Signature signature = signer();
+        OutputStream out = new BufferedOutputStream(rawOut, 64 * 1024);
+
+        writeSigned(out, signature, "# eticksystem-manifest v1 event=" + eventId
+                + " generatedAt=" + System.currentTimeMillis() + "\n");
+
+        Query query = Query.query(Criteria.where("eventId").is(eventId));
+        query.fields().include("tickets.qrCode").include("tickets.scanned");
+
+        int count = 0;
+        StringBuilder line = new StringBuilder(24);
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                if (order.getTickets() == null) continue;
+                for (OrderTicket ticket : order.getTickets()) {
+                    if (ticket.getQrCode() == null) continue;
+                    line.setLength(0);
+                    line.append(manifestHash(ticket.getQrCode())).append(',').append(ticket.isScanned() ? '1' : '0').append('\n');
+                    writeSigned(out, signature, line.toString());
+                    count++;
+                }
+            }
+        }
+
+        try {
+            out.write(("# sig=" + Base64.getEncoder().encodeToString(signature.sign()) + "\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Manifest signing failed", e);
+        }
+        out.flush();
+        log.info("Scan manifest streamed: event={} tickets={}", eventId, count);
+    }
+
+    /** Публичный ключ Ed25519 (X.509, base64) — устройства проверяют им подпись манифеста. */
+    public String publicKey() {
+        return Base64.getEncoder().encodeToString(signingKey.getPublic().getEncoded());
+    }
+
+    /** Хеш QR в манифесте — устройство считает так же: hex первых 8 байт SHA-256(qrCode в UTF-8). */
+    public static String manifestHash(String qrCode) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(qrCode.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, HASH_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ── Batch upload ──────────────────────────────────────────────────────
+
+    public List<ScanResult> applyBatch(ScanBatchRequest request, String organizerEmail) {
+        List<ScanBatchRequest.ScanItem> scans = request.getScans() != null ? request.getScans() : List.of();
+        if (scans.size() > MAX_BATCH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Bir dəfəyə maksimum " + MAX_BATCH + " skan göndərmək olar");
+        }
+        if (request.getEventId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "eventId tələb olunur");
+        }
+        checkAccess(request.getEventId(), organizerEmail);
+        // Проходы live-режима из памяти должны быть в Mongo до сравнения «кто раньше»
+        liveScanService.flush(request.getEventId());
+
+        // Повторы одного билета внутри пачки схлопываем до самого раннего прохода
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, LocalDateTime> earliest = new LinkedHashMap<>();
+        for (ScanBatchRequest.ScanItem scan : scans) {
+            if (scan.getQrCode() == null || scan.getQrCode().isBlank()) continue;
+            earliest.merge(scan.getQrCode(), scanTime(scan.getScannedAt(), now),
+                    (a, b) -> a.isBefore(b) ? a : b);
+        }
+
+        List<ScanResult> results = new ArrayList<>(earliest.size());
+        int admitted = 0;
+        for (Map.Entry<String, LocalDateTime> e : earliest.entrySet()) {
+            ScanResult result = apply(request.getEventId(), e.getKey(), e.getValue(), request.getGateId());
+            if (result.getStatus() == ScanResult.Status.ADMITTED) {
+                liveScanService.markScanned(request.getEventId(), e.getKey());
+                admitted++;
+            }
+            results.add(result);
+        }
+
+        log.info("Scan batch applied: event={} gate={} scans={} admitted={}",
+                request.getEventId(), request.getGateId(), scans.size(), admitted);
+        if (admitted > 0) {
+            eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.TICKET_SCANNED, request.getEventId(),
+                    Map.of("count", admitted, "gateId", request.getGateId())));
+        }
+        return results;
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    /**
+     * Один условный update: проход записывается, если билет ещё не сканирован
+     * или записанный проход был позже этого. Иначе этот проход — повтор.
+     * Заменённый более ранним проходом билет — SUPERSEDED: вход уже засчитан, повторно не считается.
+     */
+    private ScanResult apply(String eventId, String qrCode, LocalDateTime scannedAt, String gateId) {
+        Query query = Query.query(Criteria.where("eventId").is(eventId).and("tickets").elemMatch(
+                Criteria.where("qrCode").is(qrCode).orOperator(
+                        Criteria.where("scanned").is(false),
+                        Criteria.where("scannedAt").gt(scannedAt))));
+        query.fields().elemMatch("tickets", Criteria.where("qrCode").is(qrCode));
+
+        Update update = new Update()
+                .set("tickets.$.scanned",   true)
+                .set("tickets.$.scannedAt", scannedAt)
+                .set("tickets.$.gateId",    gateId);
+
+        Order before = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options(), Order.class);
+        if (before != null) {
+            OrderTicket ticket = before.getTickets().get(0);
+            if (ticket.isScanned()) {
+                log.warn("Earlier offline scan wins: qr={} gate={} replaced gate={}", qrCode, gateId, ticket.getGateId());
+                return new ScanResult(qrCode, ScanResult.Status.SUPERSEDED, ticket.getSeatId(), scannedAt, gateId);
+            }
+            return new ScanResult(qrCode, ScanResult.Status.ADMITTED, ticket.getSeatId(), scannedAt, gateId);
+        }
+
+        Query lookup = Query.query(Criteria.where("eventId").is(eventId).and("tickets.qrCode").is(qrCode));
+        lookup.fields().elemMatch("tickets", Criteria.where("qrCode").is(qrCode));
+        Order order = mongoTemplate.findOne(lookup, Order.class);
+
+        if (order == null || order.getTickets() == null || order.getTickets().isEmpty()) {
+            return new ScanResult(qrCode, ScanResult.Status.NOT_FOUND, null, null, null);
+        }
+        OrderTicket ticket = order.getTickets().get(0);
+        return new ScanResult(qrCode, ScanResult.Status.DUPLICATE, ticket.getSeatId(),
+                ticket.getScannedAt(), ticket.getGateId());
+    }
+
+    // Часы устройства из будущего не должны давать преимущество в «кто первый»
+    private LocalDateTime scanTime(Long epochMs, LocalDateTime now) {
+        if (epochMs == null) return now;
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+        return time.isAfter(now) ? now : time;
+    }
+
+    private Signature signer() {
+        try {
+            Signature signature = Signature.getInstance("Ed25519");
+            signature.initSign(signingKey.getPrivate());
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Manifest signer unavailable", e);
+        }
+    }
+
+    private void writeSigned(OutputStream out, Signature signature, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        try {
+            signature.update(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        out.write(bytes);
+    }
+
+    private static KeyPair loadKey(String privateKey, String publicKey) {
+        try {
+            if (privateKey.isBlank() || publicKey.isBlank()) {
+                // Без ключа в конфиге — временный: подпись действительна до перезапуска
+                log.warn("app.scanner.manifest-private-key is not set — using an ephemeral manifest key");
+                return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+            }
+            KeyFactory factory = KeyFactory.getInstance("Ed25519");
+            return new KeyPair(
+                    factory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKey))),
+                    factory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKey))));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid scanner manifest key", e);
+        }
+    }
+}
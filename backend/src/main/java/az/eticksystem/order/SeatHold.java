@@ -0,0 +1,43 @@
+package az.eticksystem.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Временная бронь мест на время оформления заказа.
+ * Места на время брони уже захвачены в ивенте (soldSeatWords), поэтому
+ * createOrder по holdId не конкурирует за них повторно.
+ * id брони не даёт прав: отменить или забрать её под заказ можно только с секретом,
+ * который возвращается один раз создателю брони (в базе — только его SHA-256).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "seat_holds")
+// Лимит активных броней на клиента
+@CompoundIndex(name = "clientKey_expiresAt", def = "{'clientKey': 1, 'expiresAt': 1}")
+public class SeatHold {
+
+    @Id
+    private String id;
+
+    private String       eventId;
+    private List<String> seatIds;
+    private String       secretHash;
+    private String       clientKey; // IP клиента
+    private Instant      createdAt;
+
+    // Индекс для планировщика, который снимает просроченные брони
+    @Indexed
+    private Instant      expiresAt;
+}
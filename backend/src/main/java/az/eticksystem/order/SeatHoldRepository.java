@@ -0,0 +1,12 @@
+package az.eticksystem.order;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SeatHoldRepository extends MongoRepository<SeatHold, String> {
+
+    // Пачкой — сами брони потом снимаются по одной атомарно через findAndRemove
+    List<SeatHold> findTop500ByExpiresAtBefore(Instant now);
+}
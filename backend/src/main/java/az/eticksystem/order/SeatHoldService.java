@@ -0,0 +1,222 @@
+package az.eticksystem.order;
+
+import az.eticksystem.event.Event;
+import az.eticksystem.event.EventRepository;
+import az.eticksystem.event.SeatClaimService;
+import az.eticksystem.order.dto.HoldResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatHoldService {
+
+    private final SeatHoldRepository        seatHoldRepository;
+    private final EventRepository           eventRepository;
+    private final SeatClaimService          seatClaimService;
+    private final MongoTemplate             mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final int          RATE_CLIENTS  = 10_000;
+
+    // Сколько минут места держатся за покупателем, пока он заполняет данные
+    @Value("${app.seat-hold.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    // Анонимный клиент не может держать весь зал: активных броней и запросов брони в минуту на IP
+    @Value("${app.seat-hold.max-active-per-client:2}")
+    private int maxActivePerClient;
+
+    @Value("${app.seat-hold.max-requests-per-minute:20}")
+    private int maxRequestsPerMinute;
+
+    // IP → {минута, запросов в ней}; LRU — поток новых адресов не раздувает память
+    private final Map<String, long[]> rateWindows = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > RATE_CLIENTS;
+        }
+    };
+
+    // ── Hold ──────────────────────────────────────────────────────────────
+
+    public HoldResponse hold(String eventId, List<String> seatIds, String clientKey) {
+        if (seatIds == null || seatIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Oturacaq seçilməyib");
+        }
+
+        checkRate(clientKey);
+        long active = mongoTemplate.count(Query.query(Criteria.where("clientKey").is(clientKey)
+                .and("expiresAt").gt(Instant.now())), SeatHold.class);
+        if (active >= maxActivePerClient) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Çox sayda aktiv rezerv. Əvvəlki rezervi tamamlayın və ya ləğv edin.");
+        }
+
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found"));
+
+        if ("PAUSED".equalsIgnoreCase(event.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Bu tədbir üçün bilet satışı müvəqqəti dayandırılıb!");
+        }
+
+        int maxTickets = (event.getMaxTicketsPerOrder() != null && event.getMaxTicketsPerOrder() > 0)
+                ? event.getMaxTicketsPerOrder() : 10;
+        if (seatIds.size() > maxTickets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit aşıldı! Maksimum " + maxTickets + " bilet.");
+        }
+
+        // Конфликт — сразу 409, бронь не создаётся
+        seatClaimService.hold(eventId, seatIds);
+
+        String  secret = newSecret();
+        Instant now    = Instant.now();
+        SeatHold hold = SeatHold.builder()
+                .eventId(eventId)
+                .seatIds(new ArrayList<>(seatIds))
+                .secretHash(hash(secret))
+                .clientKey(clientKey)
+                .createdAt(now)
+                .expiresAt(now.plus(Duration.ofMinutes(ttlMinutes)))
+                .build();
+
+        try {
+            hold = seatHoldRepository.save(hold);
+        } catch (RuntimeException e) {
+            seatClaimService.releaseHold(eventId, seatIds);
+            throw e;
+        }
+
+        log.info("Seats held: hold={} event={} seats={} client={}", hold.getId(), eventId, seatIds, clientKey);
+        return new HoldResponse(hold.getId(), secret, hold.getEventId(), hold.getSeatIds(), hold.getExpiresAt());
+    }
+
+    /** Неверный секрет неотличим от отсутствующей брони — 404. */
+    public void cancel(String holdId, String secret) {
+        SeatHold hold = take(holdId, secret);
+        if (hold == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Rezerv tapılmadı və ya vaxtı bitib");
+        }
+        releaseAndPublish(hold);
+        log.info("Seat hold cancelled: hold={} event={}", holdId, hold.getEventId());
+    }
+
+    /**
+     * Забирает бронь под заказ. Возвращает true, если все места заказа уже
+     * принадлежат этой брони — тогда повторный захват мест не нужен.
+     * Бронь удаляется атомарно, поэтому планировщик не может снять её параллельно.
+     * Без верного секрета бронь не находится — чужие места остаются занятыми, и захват даст 409.
+     */
+    public boolean consume(String holdId, String secret, String eventId, List<String> seatIds) {
+        if (holdId == null || secret == null) return false;
+
+        SeatHold hold = take(holdId, secret);
+        if (hold == null) return false;
+
+        boolean matches = hold.getExpiresAt().isAfter(Instant.now())
+                && eventId.equals(hold.getEventId())
+                && new HashSet<>(hold.getSeatIds()).equals(new HashSet<>(seatIds));
+
+        if (!matches) {
+            // Бронь просрочена или не совпадает с заказом — отпускаем её и идём обычным путём
+            releaseAndPublish(hold);
+            return false;
+        }
+        return true;
+    }
+
+    // ── Expiry ────────────────────────────────────────────────────────────
+
+    @Scheduled(fixedDelayString = "${app.seat-hold.sweep-interval-ms:15000}")
+    public void releaseExpired() {
+        List<SeatHold> expired = seatHoldRepository.findTop500ByExpiresAtBefore(Instant.now());
+
+        int released = 0;
+        for (SeatHold candidate : expired) {
+            // Бронь могли уже забрать под заказ — снимаем только если удалили её мы
+            SeatHold hold = take(candidate.getId());
+            if (hold != null) {
+                releaseAndPublish(hold);
+                released++;
+            }
+        }
+
+        if (released > 0) log.info("Expired seat holds released: {}", released);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private SeatHold take(String holdId) {
+        return mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("_id").is(holdId)), SeatHold.class);
+    }
+
+    private SeatHold take(String holdId, String secret) {
+        if (holdId == null || secret == null) return null;
+        return mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("_id").is(holdId).and("secretHash").is(hash(secret))), SeatHold.class);
+    }
+
+    private void checkRate(String clientKey) {
+        long minute = System.currentTimeMillis() / 60_000;
+        synchronized (rateWindows) {
+            long[] window = rateWindows.computeIfAbsent(clientKey, k -> new long[2]);
+            if (window[0] != minute) {
+                window[0] = minute;
+                window[1] = 0;
+            }
+            if (++window[1] > maxRequestsPerMinute) {
+                log.warn("Seat hold rate limit: client={}", clientKey);
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Çox sayda sorğu. Bir az sonra yenidən cəhd edin.");
+            }
+        }
+    }
+
+    private static String newSecret() {
+        byte[] bytes = new byte[32];
+        SECURE_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String hash(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void releaseAndPublish(SeatHold hold) {
+        seatClaimService.releaseHold(hold.getEventId(), hold.getSeatIds());
+        eventPublisher.publishEvent(new SeatsReleasedEvent(hold.getEventId(), hold.getSeatIds()));
+    }
+}
@@ -0,0 +1,6 @@
+package az.eticksystem.order;
+
+import java.util.List;
+
+/** Публикуется, когда места снова доступны для продажи (бронь истекла или отменена). */
+public record SeatsReleasedEvent(String eventId, List<String> seatIds) {}
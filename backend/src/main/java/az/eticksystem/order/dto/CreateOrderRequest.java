@@ -11,4 +11,7 @@ public class CreateOrderRequest {
     private String       customerPhone;
     private List<String> seatIds;
     private Double       totalAmount;
+    private String       holdId; // бронь из POST /orders/hold, если покупатель её делал
+    private String       holdSecret; // секрет брони из того же ответа
+    private String       locale; // язык письма с билетами (az, ru, tr, en)
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package az.eticksystem.order.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class HoldRequest {
+    private String       eventId;
+    private List<String> seatIds;
+}
@@ -0,0 +1,20 @@
+package az.eticksystem.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Ответ создателю брони; secret больше нигде не отдаётся — нужен для отмены и для заказа. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldResponse {
+    private String       id;
+    private String       secret;
+    private String       eventId;
+    private List<String> seatIds;
+    private Instant      expiresAt;
+}
@@ -0,0 +1,25 @@
+package az.eticksystem.order.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/** Фильтры и курсор списка заказов организатора (query-параметры GET /orders/organizer). */
+@Data
+public class OrderFilter {
+    private String    eventId;
+    private String    status;
+    private String    promoCode;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;      // включительно
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;        // включительно
+
+    private String    kind;      // paid | invite
+    private String    q;         // имя или email покупателя
+    private String    cursor;
+    private int       limit = 50;
+}
@@ -0,0 +1,13 @@
+package az.eticksystem.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OrderPage {
+    private List<OrderResponse> items;
+    private String              nextCursor; // null — это последняя страница
+}
@@ -0,0 +1,17 @@
+package az.eticksystem.order.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class ScanBatchRequest {
+    private String         eventId;
+    private String         gateId;
+    private List<ScanItem> scans;
+
+    @Data
+    public static class ScanItem {
+        private String qrCode;
+        private Long   scannedAt; // epoch ms на устройстве — время прохода, а не отправки
+    }
+}
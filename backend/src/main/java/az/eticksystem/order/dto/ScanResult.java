@@ -0,0 +1,25 @@
+package az.eticksystem.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanResult {
+
+    /**
+     * SUPERSEDED — билет уже был пропущен, но этот офлайн-проход оказался раньше записанного
+     * и заменил его: гость один, второй раз его не считаем.
+     */
+    public enum Status { ADMITTED, SUPERSEDED, DUPLICATE, NOT_FOUND }
+
+    private String        qrCode;
+    private Status        status;
+    private String        seatId;
+    private LocalDateTime firstScannedAt; // победивший (самый ранний) проход
+    private String        firstGateId;
+}
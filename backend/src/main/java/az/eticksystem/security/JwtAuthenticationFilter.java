@@ -1,5 +1,7 @@
 package az.eticksystem.security;
 
+import az.eticksystem.user.User;
+import az.eticksystem.user.UserCache;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,22 +9,27 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Пользователь запроса — из подписанных claims токена (JwtPrincipal), без запроса в users.
+ * Отзыв: tokenVersion из токена сверяется с версией пользователя в UserCache (LRU + TTL),
+ * так что Mongo читается только при промахе кэша.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDetailsService  userDetailsService;
+    private final UserCache  userCache;
 
     @Override
     protected void doFilterInternal(
@@ -47,32 +54,40 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        String username;
+        // Подпись и срок проверяются при разборе
+        JwtPrincipal principal;
         try {
-            username = jwtService.extractUsername(jwt);
+            principal = jwtService.parse(jwt);
         } catch (Exception ex) {
-            log.warn("Failed to extract username from JWT: {}", ex.getMessage());
+            log.warn("Invalid JWT token: {}", ex.getMessage());
             filterChain.doFilter(request, response);
             return;
         }
 
         // Устанавливаем аутентификацию только если контекст пустой
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (principal.email() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            User user = userCache.get(principal.email());
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (user == null) {
+                log.warn("JWT for unknown user [{}]", principal.email());
+            } else if (user.getTokenVersion() != principal.tokenVersion()) {
+                log.warn("Revoked JWT for user [{}]: version {} != {}",
+                        principal.email(), principal.tokenVersion(), user.getTokenVersion());
+            } else {
+                // Токен, выданный до появления claims, — роль и id из пользователя
+                if (principal.role() == null) {
+                    principal = new JwtPrincipal(user.getEmail(), user.getId(), user.getRole(), user.getTokenVersion());
+                }
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities()
+                                principal, null, List.of(new SimpleGrantedAuthority(principal.role()))
                         );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-                log.debug("Authenticated user [{}] via JWT", username);
-            } else {
-                log.warn("Invalid JWT token for user [{}]", username);
+                log.debug("Authenticated user [{}] via JWT", principal.email());
             }
         }
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package az.eticksystem.security;
+
+import java.security.Principal;
+
+/**
+ * Пользователь запроса, собранный из подписанных claims JWT — без чтения users.
+ * getName() — email, поэтому authentication.getName() в контроллерах работает как раньше.
+ * Полный User, если он нужен, — UserCache.get(email).
+ */
+public record JwtPrincipal(String email, String userId, String role, long tokenVersion) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -1,7 +1,9 @@
 package az.eticksystem.security;
 
+import az.eticksystem.user.User;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import lombok.extern.slf4j.Slf4j;
@@ -18,7 +20,12 @@ import java.util.Date;
 @Service
 public class JwtService {
 
+    private static final String CLAIM_USER_ID       = "uid";
+    private static final String CLAIM_ROLE          = "role";
+    private static final String CLAIM_TOKEN_VERSION = "tv";
+
     private final SecretKey signingKey;
+    private final JwtParser parser;
     private final long expirationMs;
 
     public JwtService(
@@ -28,6 +35,7 @@ public class JwtService {
         // Сразу конвертируем в ключ при старте — не делаем это при каждом запросе
         byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         this.signingKey  = new SecretKeySpec(keyBytes, SignatureAlgorithm.HS256.getJcaName());
+        this.parser       = Jwts.parserBuilder().setSigningKey(signingKey).build(); // неизменяемый, потокобезопасный
         this.expirationMs = expirationMs;
 
         // Проверяем минимальную длину секрета при старте приложения
@@ -43,37 +51,39 @@ public class JwtService {
         Date now    = new Date();
         Date expiry = new Date(now.getTime() + expirationMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(now)
-                .setExpiration(expiry)
-                .signWith(signingKey, SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(expiry);
+
+        // Роль, id и версия токена в claims — фильтр строит пользователя запроса без чтения users
+        if (userDetails instanceof User user) {
+            builder.claim(CLAIM_USER_ID, user.getId())
+                   .claim(CLAIM_ROLE, user.getRole())
+                   .claim(CLAIM_TOKEN_VERSION, user.getTokenVersion());
+        }
+        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
     }
 
     public String extractUsername(String token) {
         return parseClaims(token).getSubject();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        try {
-            String username = extractUsername(token);
-            return username.equals(userDetails.getUsername()) && !isExpired(token);
-        } catch (JwtException | IllegalArgumentException e) {
-            log.warn("Token validation failed: {}", e.getMessage());
-            return false;
-        }
-    }
-
-    private boolean isExpired(String token) {
-        return parseClaims(token).getExpiration().before(new Date());
+    /**
+     * Проверяет подпись и срок и собирает пользователя из claims.
+     * Токены, выданные до появления claims, дают role = null и tokenVersion = 0.
+     */
+    public JwtPrincipal parse(String token) {
+        Claims claims = parseClaims(token);
+        Number version = claims.get(CLAIM_TOKEN_VERSION, Number.class);
+        return new JwtPrincipal(
+                claims.getSubject(),
+                claims.get(CLAIM_USER_ID, String.class),
+                claims.get(CLAIM_ROLE, String.class),
+                version != null ? version.longValue() : 0L);
     }
 
     private Claims parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 }
\ No newline at end of file
@@ -29,6 +29,9 @@ public class User implements UserDetails {
     @Builder.Default
     private String role = "ROLE_USER";
 
+    // Версия в каждом JWT; увеличение (сброс пароля, выход со всех устройств) отзывает все выданные токены
+    private long tokenVersion;
+
     // Личные данные
     private String fullName;
     private String firstName;
@@ -0,0 +1,57 @@
+package az.eticksystem.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Небольшой LRU-кэш пользователей по email с TTL.
+ * JWT-фильтр сверяет здесь tokenVersion, не читая users на каждый запрос; нужен и тем,
+ * кому действительно нужен весь User (профиль).
+ * Запись устаревает через ttl-seconds — на другом инстансе отзыв токена или смена профиля
+ * видны не позже этого срока; на своём инстансе evict после сохранения делает их видимыми сразу.
+ */
+@Slf4j
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final long           ttlMillis;
+
+    private final Map<String, Entry> entries;
+
+    public UserCache(UserRepository userRepository,
+                     @Value("${app.security.user-cache-size:10000}") int maxSize,
+                     @Value("${app.security.user-cache-ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.ttlMillis      = ttlSeconds * 1000;
+        this.entries        = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /** Пользователь или null, если его нет; отсутствие не кэшируется — только что созданный виден сразу. */
+    public User get(String email) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(email);
+        if (entry != null && now - entry.loadedAt() < ttlMillis) return entry.user();
+
+        User user = userRepository.findByEmail(email).orElse(null);
+        if (user != null) entries.put(email, new Entry(user, now));
+        else entries.remove(email);
+        return user;
+    }
+
+    public void evict(String email) {
+        entries.remove(email);
+    }
+
+    private record Entry(User user, long loadedAt) {}
+}
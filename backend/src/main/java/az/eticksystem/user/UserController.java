@@ -1,19 +1,30 @@
 package az.eticksystem.user;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/users")
+@RequiredArgsConstructor
 // НЕТ @CrossOrigin — CORS настроен глобально в SecurityConfig
 public class UserController {
 
+    private final UserCache userCache;
+
+    // Принципал запроса — claims токена (JwtPrincipal); сам User берётся из кэша
     @GetMapping("/me")
-    public UserMeResponse me(@AuthenticationPrincipal User user) {
+    public UserMeResponse me(Authentication authentication) {
+        User user = userCache.get(authentication.getName());
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "İstifadəçi tapılmadı");
+        }
         log.debug("Profile requested for user: {}", user.getEmail());
         return new UserMeResponse(
                 user.getFullName(),
@@ -3,6 +3,11 @@ package az.eticksystem.user;
 import az.eticksystem.auth.dto.ProfileRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -13,6 +18,8 @@ import org.springframework.web.server.ResponseStatusException;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final UserCache      userCache;
+    private final MongoTemplate  mongoTemplate;
 
     public User findByEmail(String email) {
         return userRepository.findByEmail(email)
@@ -24,22 +31,47 @@ public class UserService {
                 });
     }
 
+    /** $set только присланных полей профиля — параллельный отзыв токенов (tokenVersion) не перетирается. */
     public User updateProfile(String email, ProfileRequest request) {
-        User user = findByEmail(email);
-
-        if (request.getFirstName()   != null) user.setFirstName(request.getFirstName());
-        if (request.getLastName()    != null) user.setLastName(request.getLastName());
-        if (request.getCompanyName() != null) user.setCompanyName(request.getCompanyName());
-        if (request.getPhone()       != null) user.setPhone(request.getPhone());
-        if (request.getAvatarUrl()   != null) user.setAvatarUrl(request.getAvatarUrl());
+        Update update = new Update();
+        if (request.getFirstName()   != null) update.set("firstName",   request.getFirstName());
+        if (request.getLastName()    != null) update.set("lastName",    request.getLastName());
+        if (request.getCompanyName() != null) update.set("companyName", request.getCompanyName());
+        if (request.getPhone()       != null) update.set("phone",       request.getPhone());
+        if (request.getAvatarUrl()   != null) update.set("avatarUrl",   request.getAvatarUrl());
 
         // Синхронизируем fullName если обновлены имя и фамилия
         if (request.getFirstName() != null && request.getLastName() != null) {
-            user.setFullName(request.getFirstName() + " " + request.getLastName());
+            update.set("fullName", request.getFirstName() + " " + request.getLastName());
         }
 
-        User saved = userRepository.save(user);
+        if (update.getUpdateObject().isEmpty()) return findByEmail(email);
+        User saved = modify(email, update);
         log.info("Profile updated for user: {}", email);
         return saved;
     }
+
+    /** Отзывает все выданные пользователю токены: новая tokenVersion не совпадёт ни с одним из них. */
+    public void revokeTokens(String email) {
+        User user = modify(email, new Update().inc("tokenVersion", 1));
+        log.info("Tokens revoked for user: {} version={}", email, user.getTokenVersion());
+    }
+
+    /** Новый пароль и отзыв старых токенов одной записью (украденный токен не переживёт сброс). */
+    public void resetPassword(String email, String encodedPassword) {
+        User user = modify(email, new Update().set("password", encodedPassword).inc("tokenVersion", 1));
+        log.info("Password reset for user: {} version={}", email, user.getTokenVersion());
+    }
+
+    // Атомарное изменение документа пользователя; кэш JWT-фильтра сбрасывается сразу
+    private User modify(String email, Update update) {
+        User user = mongoTemplate.findAndModify(Query.query(Criteria.where("email").is(email)), update,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (user == null) {
+            log.warn("User not found: {}", email);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "İstifadəçi tapılmadı");
+        }
+        userCache.evict(email);
+        return user;
+    }
 }
\ No newline at end of file
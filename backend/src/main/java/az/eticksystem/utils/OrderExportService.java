@@ -0,0 +1,201 @@
+package az.eticksystem.utils;
+
+import az.eticksystem.event.Event;
+import az.eticksystem.event.EventRepository;
+import az.eticksystem.order.Order;
+import az.eticksystem.order.OrderCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка заказов ивента в CSV/XLSX прямо из курсора Mongo в ответ.
+ * Заказы не собираются в список: память не зависит от размера ивента,
+ * CSV начинает уходить клиенту сразу после заголовка.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private static final String[] COLUMNS = {
+            "Sifariş ID", "Tarix", "Müştəri", "Email", "Telefon", "Bilet sayı",
+            "Yerlər", "Məbləğ", "İlkin məbləğ", "Promokod", "Status"
+    };
+
+    // Колонки, которые мы сами заполняем числами (Bilet sayı, Məbləğ, İlkin məbləğ) — им защита от формул не нужна
+    private static final Set<Integer> NUMERIC_COLUMNS = Set.of(5, 7, 8);
+
+    // Первые символы, с которых Excel/Sheets начинают разбор формулы
+    private static final String FORMULA_START = "=+-@\t\r";
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // SXSSF держит в памяти только это окно строк, остальные сразу уходят во временный файл
+    private static final int XLSX_WINDOW = 200;
+
+    private static final int PROGRESS_ROWS = 1000;
+
+    private final MongoTemplate   mongoTemplate;
+    private final EventRepository eventRepository;
+
+    public enum Format { CSV, XLSX }
+
+    /** Проверка прав до начала потока — после первых байт статус ответа уже не поменять. */
+    public Event checkAccess(String eventId, String organizerEmail) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Tədbir tapılmadı"));
+        if (!event.getOrganizerId().equals(organizerEmail)) {
+            log.warn("Unauthorized order export: event={} by={}", eventId, organizerEmail);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+        return event;
+    }
+
+    public void write(String eventId, Format format, OutputStream out) throws IOException {
+        write(eventId, format, out, rows -> { });
+    }
+
+    /** onRows получает число выведенных заказов каждые PROGRESS_ROWS строк (прогресс фоновой задачи). */
+    public void write(String eventId, Format format, OutputStream out, LongConsumer onRows) throws IOException {
+        long started = System.currentTimeMillis();
+        long rows = format == Format.CSV ? writeCsv(eventId, out, onRows) : writeXlsx(eventId, out, onRows);
+        onRows.accept(rows);
+        log.info("Orders exported: event={} format={} rows={} in {} ms",
+                eventId, format, rows, System.currentTimeMillis() - started);
+    }
+
+    // ── CSV ───────────────────────────────────────────────────────────────
+
+    private long writeCsv(String eventId, OutputStream out, LongConsumer onRows) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write('\uFEFF'); // BOM — Excel иначе открывает UTF-8 (ə, ş, ç) как ANSI
+        writeCsvRow(writer, COLUMNS);
+        writer.flush();
+
+        long rows = 0;
+        try (Stream<Order> orders = mongoTemplate.stream(exportQuery(eventId), Order.class)) {
+            Iterator<Order> it = orders.iterator();
+            while (it.hasNext()) {
+                writeCsvRow(writer, values(it.next()));
+                if (++rows % PROGRESS_ROWS == 0) onRows.accept(rows);
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private void writeCsvRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) writer.write(',');
+            writer.write(csvEscape(values[i], NUMERIC_COLUMNS.contains(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private String csvEscape(String value, boolean numeric) {
+        if (value == null) return "";
+        // Защита от формул: текст, начинающийся с = + - @ TAB CR, выводим как текст — в том числе
+        // похожий на число (+994... телефон тоже уходит в формулу)
+        if (!numeric && !value.isEmpty() && FORMULA_START.indexOf(value.charAt(0)) >= 0) value = "'" + value;
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // ── XLSX ──────────────────────────────────────────────────────────────
+
+    private long writeXlsx(String eventId, OutputStream out, LongConsumer onRows) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("Sifarişlər");
+            CellStyle header = workbook.createCellStyle();
+            org.apache.poi.ss.usermodel.Font bold = workbook.createFont();
+            bold.setBold(true);
+            header.setFont(bold);
+
+            Row head = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                Cell cell = head.createCell(i);
+                cell.setCellValue(COLUMNS[i]);
+                cell.setCellStyle(header);
+            }
+
+            int rowNum = 1;
+            try (Stream<Order> orders = mongoTemplate.stream(exportQuery(eventId), Order.class)) {
+                Iterator<Order> it = orders.iterator();
+                while (it.hasNext()) {
+                    Order o = it.next();
+                    Row row = sheet.createRow(rowNum++);
+                    if (rowNum % PROGRESS_ROWS == 0) onRows.accept(rowNum - 1L);
+                    String[] values = values(o);
+                    for (int i = 0; i < values.length; i++) {
+                        if (values[i] != null) row.createCell(i).setCellValue(values[i]);
+                    }
+                    // Количество и суммы — числами, чтобы в Excel работали формулы
+                    row.createCell(5).setCellValue(seatCount(o));
+                    if (o.getTotalAmount()    != null) row.createCell(7).setCellValue(o.getTotalAmount());
+                    if (o.getOriginalAmount() != null) row.createCell(8).setCellValue(o.getOriginalAmount());
+                }
+            }
+            workbook.write(out);
+            return rowNum - 1L;
+        } finally {
+            workbook.dispose(); // удаляет временные файлы SXSSF
+            workbook.close();
+        }
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    // Билеты (QR-коды) в выгрузку не идут — не читаем их из базы
+    private Query exportQuery(String eventId) {
+        Query query = Query.query(Criteria.where("eventId").is(eventId)).with(OrderCursor.SORT);
+        query.fields().exclude("tickets");
+        query.cursorBatchSize(1000);
+        return query;
+    }
+
+    private String[] values(Order o) {
+        return new String[] {
+                o.getId(),
+                o.getCreatedAt() != null ? o.getCreatedAt().format(DATE_FMT) : null,
+                o.getCustomerName(),
+                o.getCustomerEmail(),
+                o.getCustomerPhone(),
+                String.valueOf(seatCount(o)),
+                o.getSeatIds() != null ? String.join(" ", o.getSeatIds()) : null,
+                o.getTotalAmount()    != null ? String.valueOf(o.getTotalAmount())    : null,
+                o.getOriginalAmount() != null ? String.valueOf(o.getOriginalAmount()) : null,
+                o.getPromoCode(),
+                o.getStatus()
+        };
+    }
+
+    private int seatCount(Order o) {
+        return o.getSeatIds() != null ? o.getSeatIds().size() : 1;
+    }
+}
@@ -3,7 +3,7 @@ package az.eticksystem.utils;
 import az.eticksystem.event.Event;
 import az.eticksystem.event.EventRepository;
 import az.eticksystem.order.Order;
-import az.eticksystem.order.OrderRepository;
+import az.eticksystem.order.OrderCursor;
 import com.lowagie.text.*;
 import com.lowagie.text.Font;
 import com.lowagie.text.Image;
@@ -11,56 +11,85 @@ import com.lowagie.text.pdf.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.awt.Color;
-import java.io.ByteArrayOutputStream;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
+/**
+ * PDF-отчёт по заказам ивента.
+ * Пишется прямо в поток ответа: заказы читаются курсором Mongo, таблица помечена незавершённой
+ * (LargeElement) и каждые FLUSH_ROWS строк отдаётся документу — готовые строки уходят на страницы
+ * и освобождаются. Память не зависит от числа заказов.
+ * Шрифт и логотип разбираются один раз за время жизни процесса.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PdfReportService {
 
-    private final OrderRepository orderRepository;
+    private static final int FLUSH_ROWS = 200;
+
+    private static final Color PRIMARY = new Color(59, 130, 246);
+    private static final Color SUCCESS = new Color(22, 163, 74);
+
+    private final MongoTemplate   mongoTemplate;
     private final EventRepository eventRepository;
 
-    public byte[] generateEventReport(String eventId) {
+    // Кэш на процесс: BaseFont неизменяем, логотип копируется в каждый документ (Image.getInstance(Image))
+    private volatile BaseFont baseFont;
+    private volatile Image    logo;
+    private volatile boolean  logoMissing;
+
+    /** Проверка прав до начала потока — после первых байт статус ответа уже не поменять. */
+    public Event checkAccess(String eventId, String organizerEmail) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Tədbir tapılmadı"));
+        if (!event.getOrganizerId().equals(organizerEmail)) {
+            log.warn("Unauthorized report access: event={} by={}", eventId, organizerEmail);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+        return event;
+    }
 
-        List<Order> orders = orderRepository.findByEventId(eventId);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    public void writeEventReport(Event event, OutputStream out) throws IOException {
+        writeEventReport(event, out, rows -> { });
+    }
+
+    /** onRows получает число уже выведенных заказов после каждой порции строк (прогресс фоновой задачи). */
+    public void writeEventReport(Event event, OutputStream out, LongConsumer onRows) throws IOException {
+        long started = System.currentTimeMillis();
         Document document = new Document(PageSize.A4, 30, 30, 40, 40);
 
         try {
-            PdfWriter.getInstance(document, baos);
+            PdfWriter.getInstance(document, out);
             document.open();
 
-            BaseFont bf;
-            try {
-                bf = BaseFont.createFont("fonts/arial.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-            } catch (Exception e) {
-                log.warn("arial.ttf not found, using fallback font");
-                bf = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
-            }
-
+            BaseFont bf = baseFont();
             Font fontTitle     = new Font(bf, 18, Font.BOLD,   new Color(15, 23, 42));
             Font fontSub       = new Font(bf, 11, Font.NORMAL,  new Color(100, 116, 139));
             Font fontTableHead = new Font(bf, 10, Font.BOLD,   Color.WHITE);
             Font fontCell      = new Font(bf,  9, Font.NORMAL);
+            Font fontSuccess   = new Font(bf,  9, Font.NORMAL, SUCCESS);
 
             // Логотип
-            try {
-                Image logo = Image.getInstance(new ClassPathResource("static/logo.png").getURL());
-                logo.scaleToFit(90, 35);
-                document.add(logo);
-            } catch (Exception e) {
-                log.warn("Logo not found, using text fallback");
-                document.add(new Paragraph("eticksystem",
-                        new Font(bf, 14, Font.BOLD, new Color(59, 130, 246))));
+            Image logoImage = logo();
+            if (logoImage != null) {
+                document.add(logoImage);
+            } else {
+                document.add(new Paragraph("eticksystem", new Font(bf, 14, Font.BOLD, PRIMARY)));
             }
 
             // Заголовок
@@ -70,79 +99,158 @@ public class PdfReportService {
             document.add(new Paragraph("Tədbir: " + event.getTitle(), fontSub));
             document.add(new Chunk("\n"));
 
-            // KPI блок
-            double totalRev = orders.stream()
-                    .mapToDouble(o -> o.getTotalAmount() != null ? o.getTotalAmount() : 0.0)
-                    .sum();
+            // KPI блок — итоги считает Mongo, заказы для этого не загружаются
+            Totals totals = totals(event.getId());
             PdfPTable kpiTable = new PdfPTable(2);
             kpiTable.setWidthPercentage(100);
             kpiTable.setSpacingAfter(20);
-            kpiTable.addCell(createKpiCell("Ümumi Gəlir",      totalRev + " AZN", bf));
-            kpiTable.addCell(createKpiCell("Satılmış Biletlər", orders.size() + " ədəd", bf));
+            kpiTable.addCell(createKpiCell("Ümumi Gəlir",      totals.revenue() + " AZN", bf));
+            kpiTable.addCell(createKpiCell("Satılmış Biletlər", totals.tickets() + " ədəd", bf));
             document.add(kpiTable);
 
-            // Таблица заказов
+            // Таблица заказов: шапка повторяется на каждой странице
             PdfPTable table = new PdfPTable(6);
             table.setWidthPercentage(100);
             table.setWidths(new float[]{16, 26, 18, 8, 16, 16});
+            table.setHeaderRows(1);
+            table.setComplete(false);
 
             String[] headers = {"Sifariş ID", "Müştəri", "Telefon", "Say", "Məbləğ", "Status"};
             for (String h : headers) {
                 PdfPCell cell = new PdfPCell(new Phrase(h, fontTableHead));
-                cell.setBackgroundColor(new Color(59, 130, 246));
+                cell.setBackgroundColor(PRIMARY);
                 cell.setPadding(10);
                 cell.setBorderColor(new Color(226, 232, 240));
                 cell.setHorizontalAlignment(Element.ALIGN_CENTER);
                 table.addCell(cell);
             }
 
-            for (Order o : orders) {
-                String shortId = o.getId() != null && o.getId().length() > 6
-                        ? o.getId().substring(0, 8).toUpperCase() : o.getId();
+            long rows = 0;
+            try (Stream<Order> orders = mongoTemplate.stream(reportQuery(event.getId()), Order.class)) {
+                Iterator<Order> it = orders.iterator();
+                while (it.hasNext()) {
+                    addOrderRow(table, it.next(), fontCell, fontSuccess);
+                    // Готовые строки — на страницу, из памяти таблицы они удаляются
+                    if (++rows % FLUSH_ROWS == 0) {
+                        document.add(table);
+                        onRows.accept(rows);
+                    }
+                }
+            }
 
-                table.addCell(createDataCell("#" + shortId, fontCell, Element.ALIGN_CENTER));
+            table.setComplete(true);
+            document.add(table);
+            document.close();
+            onRows.accept(rows);
+            log.info("PDF report generated for event: {} orders={} in {} ms",
+                    event.getId(), rows, System.currentTimeMillis() - started);
 
-                String customerInfo = (o.getCustomerName()  != null ? o.getCustomerName()  : "") +
-                        (o.getCustomerEmail() != null ? "\n" + o.getCustomerEmail() : "");
-                table.addCell(createDataCell(customerInfo, fontCell, Element.ALIGN_LEFT));
+        } catch (DocumentException e) {
+            log.error("PDF generation failed for event {}: {}", event.getId(), e.getMessage(), e);
+            throw new IOException("PDF yaradılarkən xəta baş verdi", e);
+        }
+    }
 
-                table.addCell(createDataCell(
-                        o.getCustomerPhone() != null ? o.getCustomerPhone() : "-",
-                        fontCell, Element.ALIGN_CENTER));
+    // ── Private helpers ───────────────────────────────────────────────────
 
-                int qty = o.getTickets() != null ? o.getTickets().size() : 1;
-                table.addCell(createDataCell(String.valueOf(qty), fontCell, Element.ALIGN_CENTER));
+    private void addOrderRow(PdfPTable table, Order o, Font fontCell, Font fontSuccess) {
+        String shortId = o.getId() != null && o.getId().length() > 6
+                ? o.getId().substring(0, 8).toUpperCase() : o.getId();
 
-                table.addCell(createDataCell(
-                        (o.getTotalAmount() != null ? o.getTotalAmount() : 0.0) + " ₼",
-                        fontCell, Element.ALIGN_RIGHT));
+        table.addCell(createDataCell("#" + shortId, fontCell, Element.ALIGN_CENTER));
 
-                PdfPCell statusCell = createDataCell(
-                        o.getStatus() != null ? o.getStatus() : "N/A",
-                        fontCell, Element.ALIGN_CENTER);
-                if ("SUCCESS".equals(o.getStatus()) || "Ödənilib".equals(o.getStatus())) {
-                    statusCell.getPhrase().getFont().setColor(new Color(22, 163, 74));
-                }
-                table.addCell(statusCell);
-            }
+        String customerInfo = (o.getCustomerName()  != null ? o.getCustomerName()  : "") +
+                (o.getCustomerEmail() != null ? "\n" + o.getCustomerEmail() : "");
+        table.addCell(createDataCell(customerInfo, fontCell, Element.ALIGN_LEFT));
 
-            document.add(table);
-            document.close();
-            log.info("PDF report generated for event: {}", eventId);
+        table.addCell(createDataCell(
+                o.getCustomerPhone() != null ? o.getCustomerPhone() : "-",
+                fontCell, Element.ALIGN_CENTER));
+
+        table.addCell(createDataCell(String.valueOf(seatCount(o)), fontCell, Element.ALIGN_CENTER));
+
+        table.addCell(createDataCell(
+                (o.getTotalAmount() != null ? o.getTotalAmount() : 0.0) + " ₼",
+                fontCell, Element.ALIGN_RIGHT));
+
+        boolean paid = "SUCCESS".equals(o.getStatus()) || "Ödənilib".equals(o.getStatus());
+        table.addCell(createDataCell(
+                o.getStatus() != null ? o.getStatus() : "N/A",
+                paid ? fontSuccess : fontCell, Element.ALIGN_CENTER));
+    }
+
+    // Билеты (QR-коды) отчёту не нужны — количество берётся из seatIds
+    private Query reportQuery(String eventId) {
+        Query query = Query.query(Criteria.where("eventId").is(eventId)).with(OrderCursor.SORT);
+        query.fields().exclude("tickets");
+        query.cursorBatchSize(1000);
+        return query;
+    }
+
+    private record Totals(double revenue, long tickets) {}
+
+    private Totals totals(String eventId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("eventId").is(eventId)),
+                Aggregation.project("totalAmount")
+                        .and(ConditionalOperators.when(ArrayOperators.IsArray.isArray("seatIds"))
+                                .then(ArrayOperators.Size.lengthOfArray("seatIds"))
+                                .otherwise(1))
+                        .as("seats"),
+                Aggregation.group().sum("totalAmount").as("revenue").sum("seats").as("tickets"));
+        org.bson.Document result = mongoTemplate.aggregate(aggregation, Order.class, org.bson.Document.class)
+                .getUniqueMappedResult();
+        if (result == null) return new Totals(0, 0);
+        return new Totals(
+                result.get("revenue") instanceof Number n ? n.doubleValue() : 0.0,
+                result.get("tickets") instanceof Number n ? n.longValue()   : 0L);
+    }
+
+    private int seatCount(Order o) {
+        return o.getSeatIds() != null ? o.getSeatIds().size() : 1;
+    }
 
-        } catch (Exception e) {
-            log.error("PDF generation failed for event {}: {}", eventId, e.getMessage(), e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                    "PDF yaradılarkən xəta baş verdi");
+    private BaseFont baseFont() throws IOException {
+        BaseFont bf = baseFont;
+        if (bf != null) return bf;
+        synchronized (this) {
+            if (baseFont == null) {
+                try {
+                    baseFont = BaseFont.createFont("fonts/arial.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+                } catch (Exception e) {
+                    log.warn("arial.ttf not found, using fallback font");
+                    baseFont = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+                }
+            }
+            return baseFont;
         }
+    }
 
-        return baos.toByteArray();
+    /** Копия закэшированного логотипа (масштаб уже применён) или null — текстовая замена. */
+    private Image logo() {
+        if (logoMissing) return null;
+        if (logo == null) {
+            synchronized (this) {
+                if (logo == null && !logoMissing) {
+                    try {
+                        Image image = Image.getInstance(new ClassPathResource("static/logo.png").getURL());
+                        image.scaleToFit(90, 35);
+                        logo = image;
+                    } catch (Exception e) {
+                        log.warn("Logo not found, using text fallback");
+                        logoMissing = true;
+                        return null;
+                    }
+                }
+            }
+        }
+        return Image.getInstance(logo);
     }
 
     private PdfPCell createKpiCell(String label, String val, BaseFont bf) {
         PdfPCell cell = new PdfPCell();
         cell.addElement(new Phrase(label, new Font(bf, 8, Font.NORMAL, Color.GRAY)));
-        cell.addElement(new Phrase(val,   new Font(bf, 13, Font.BOLD, new Color(59, 130, 246))));
+        cell.addElement(new Phrase(val,   new Font(bf, 13, Font.BOLD, PRIMARY)));
         cell.setPadding(12);
         cell.setBackgroundColor(new Color(248, 250, 252));
         cell.setBorderColor(new Color(226, 232, 240));
@@ -157,4 +265,4 @@ public class PdfReportService {
         c.setVerticalAlignment(Element.ALIGN_MIDDLE);
         return c;
     }
-}
\ No newline at end of file
+}
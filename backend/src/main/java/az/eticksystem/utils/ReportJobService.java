@@ -0,0 +1,303 @@
+package az.eticksystem.utils;
+
+import az.eticksystem.event.DashboardEvent;
+import az.eticksystem.event.Event;
+import az.eticksystem.event.SalesRollupService;
+import az.eticksystem.order.Order;
+import az.eticksystem.order.OrderCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Фоновая генерация отчётов (PDF/CSV/XLSX) вместо рендера в потоке Tomcat.
+ * submit возвращает задачу сразу; ограниченный пул рендерит файл, прогресс доступен опросом
+ * и через SSE ивента (DashboardEvent.REPORT_PROGRESS). Готовый файл лежит на диске под ключом
+ * eventId + версия данных — повторная выгрузка без новых заказов отдаётся из кэша без рендера.
+ */
+@Slf4j
+@Service
+public class ReportJobService {
+
+    private static final Duration JOB_TTL = Duration.ofHours(1);
+
+    private final PdfReportService          pdfReportService;
+    private final OrderExportService        orderExportService;
+    private final SalesRollupService        salesRollupService;
+    private final MongoTemplate             mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path                      cacheDir;
+    private final ThreadPoolExecutor        workers;
+
+    private final ConcurrentMap<String, ReportJob> jobs   = new ConcurrentHashMap<>();
+    // Одна задача на файл: повторный submit той же версии присоединяется к ней
+    private final ConcurrentMap<String, ReportJob> active = new ConcurrentHashMap<>();
+
+    public ReportJobService(PdfReportService pdfReportService,
+                            OrderExportService orderExportService,
+                            SalesRollupService salesRollupService,
+                            MongoTemplate mongoTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${app.reports.cache-dir:data/reports}") String cacheDir,
+                            @Value("${app.reports.workers:2}") int workers,
+                            @Value("${app.reports.queue-capacity:20}") int queueCapacity) {
+        this.pdfReportService   = pdfReportService;
+        this.orderExportService = orderExportService;
+        this.salesRollupService = salesRollupService;
+        this.mongoTemplate      = mongoTemplate;
+        this.eventPublisher     = eventPublisher;
+        this.cacheDir           = Paths.get(cacheDir);
+        this.workers            = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "report-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public enum Format { PDF, CSV, XLSX }
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /** Состояние задачи для клиента. */
+    public record JobView(String jobId, String eventId, Format format, Status status,
+                          int progress, long rows, long total, boolean cached, String error) {}
+
+    // ── Submit ────────────────────────────────────────────────────────────
+
+    public JobView submit(Event event, Format format, String organizerEmail) {
+        DataVersion version = dataVersion(event.getId());
+        Path file = cacheFile(event.getId(), version.key(), format);
+
+        // Данные не менялись с прошлой выгрузки — файл уже готов
+        if (Files.exists(file)) {
+            ReportJob job = new ReportJob(event, format, organizerEmail, file, version.orders());
+            job.cached = true;
+            job.rows   = version.orders();
+            job.status = Status.DONE;
+            jobs.put(job.id, job);
+            return job.view();
+        }
+
+        ReportJob job = active.computeIfAbsent(file.toString(), key -> {
+            ReportJob created = new ReportJob(event, format, organizerEmail, file, version.orders());
+            try {
+                workers.execute(() -> render(created));
+            } catch (RejectedExecutionException e) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Hesabat növbəsi doludur, bir az sonra yenidən cəhd edin");
+            }
+            return created;
+        });
+        jobs.put(job.id, job);
+        return job.view();
+    }
+
+    // ── Status / download ─────────────────────────────────────────────────
+
+    public JobView status(String eventId, String jobId, String organizerEmail) {
+        return find(eventId, jobId, organizerEmail).view();
+    }
+
+    /** Готовый файл задачи; 409, пока отчёт ещё строится. */
+    public Path result(String eventId, String jobId, String organizerEmail) {
+        ReportJob job = find(eventId, jobId, organizerEmail);
+        if (job.status != Status.DONE) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Hesabat hələ hazır deyil");
+        }
+        if (!Files.exists(job.file)) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Hesabat faylı artıq mövcud deyil, yenidən yaradın");
+        }
+        return job.file;
+    }
+
+    public static String fileName(String eventId, Format format) {
+        return (format == Format.PDF ? "report_" : "orders_") + eventId + "." + extension(format);
+    }
+
+    // ── Render ────────────────────────────────────────────────────────────
+
+    private void render(ReportJob job) {
+        job.status = Status.RUNNING;
+        publish(job);
+        Path tmp = job.file.resolveSibling(job.file.getFileName() + "." + job.id + ".tmp");
+        try {
+            Files.createDirectories(job.file.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                switch (job.format) {
+                    case PDF  -> pdfReportService.writeEventReport(job.event, out, rows -> progress(job, rows));
+                    case CSV  -> orderExportService.write(job.event.getId(), OrderExportService.Format.CSV, out, rows -> progress(job, rows));
+                    case XLSX -> orderExportService.write(job.event.getId(), OrderExportService.Format.XLSX, out, rows -> progress(job, rows));
+                }
+            }
+            // Время изменения файла — момент снимка данных, а не конец рендера: по нему сравниваются версии
+            Files.setLastModifiedTime(tmp, FileTime.from(job.createdAt));
+            // Читатель никогда не видит недописанный файл
+            Files.move(tmp, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteOlderVersions(job);
+            job.status = Status.DONE;
+            log.info("Report job done: id={} event={} format={} rows={}", job.id, job.event.getId(), job.format, job.rows);
+        } catch (Exception e) {
+            job.status = Status.FAILED;
+            job.error  = "Hesabat yaradılarkən xəta baş verdi";
+            log.error("Report job failed: id={} event={} {}", job.id, job.event.getId(), e.getMessage(), e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // останется до следующей очистки каталога
+            }
+        } finally {
+            active.remove(job.file.toString(), job);
+            publish(job);
+        }
+    }
+
+    private void progress(ReportJob job, long rows) {
+        int before = job.percent();
+        job.rows = rows;
+        // В SSE — только при смене процента, а не на каждую порцию строк
+        if (job.percent() != before) publish(job);
+    }
+
+    private void publish(ReportJob job) {
+        JobView view = job.view();
+        eventPublisher.publishEvent(new DashboardEvent(DashboardEvent.Type.REPORT_PROGRESS, job.event.getId(),
+                Map.of("jobId", view.jobId(), "format", view.format().name(),
+                       "status", view.status().name(), "progress", view.progress())));
+    }
+
+    // ── Cache ─────────────────────────────────────────────────────────────
+
+    private record DataVersion(long orders, String key) {}
+
+    /**
+     * Отпечаток данных отчёта: число заказов, самый новый заказ и свод продаж ивента.
+     * Новый заказ меняет первые два, снятие места организатором — сумму билетов в своде.
+     * Считается из индексов и sales_daily, заказы не читаются.
+     */
+    private DataVersion dataVersion(String eventId) {
+        Query byEvent = Query.query(Criteria.where("eventId").is(eventId));
+        long count = mongoTemplate.count(byEvent, Order.class);
+
+        Query newest = Query.query(Criteria.where("eventId").is(eventId)).with(OrderCursor.SORT).limit(1);
+        newest.fields().include("_id");
+        Order last = mongoTemplate.findOne(newest, Order.class);
+
+        List<String> ids = List.of(eventId);
+        String raw = count + ":" + (last != null ? last.getId() : "-") + ":"
+                + salesRollupService.tickets(ids) + ":" + salesRollupService.revenue(ids);
+        return new DataVersion(count, UUID.nameUUIDFromBytes(raw.getBytes()).toString().replace("-", "").substring(0, 16));
+    }
+
+    private Path cacheFile(String eventId, String version, Format format) {
+        if (!eventId.matches("[A-Za-z0-9_-]+")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Yanlış tədbir ID");
+        }
+        return cacheDir.resolve(eventId).resolve(version + "." + extension(format));
+    }
+
+    /**
+     * Версии того же формата со снимком данных строго старше нашего больше не понадобятся.
+     * Более новые не трогаем: медленная задача по старым данным может закончиться позже
+     * задачи по новым, и тогда её результат не должен удалить свежий файл.
+     */
+    private void deleteOlderVersions(ReportJob job) {
+        String   ext  = "*." + extension(job.format);
+        FileTime mine = FileTime.from(job.createdAt);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(job.file.getParent(), ext)) {
+            for (Path f : files) {
+                if (f.equals(job.file)) continue;
+                try {
+                    if (Files.getLastModifiedTime(f).compareTo(mine) < 0) Files.deleteIfExists(f);
+                } catch (NoSuchFileException ignored) {
+                    // уже удалён параллельной задачей
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Report cache cleanup failed: {} {}", job.file.getParent(), e.getMessage());
+        }
+    }
+
+    // Завершённые задачи держим час — клиент успевает скачать результат
+    @Scheduled(fixedDelay = 600_000)
+    public void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(JOB_TTL);
+        jobs.values().removeIf(job -> (job.status == Status.DONE || job.status == Status.FAILED)
+                && job.createdAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private ReportJob find(String eventId, String jobId, String organizerEmail) {
+        ReportJob job = jobs.get(jobId);
+        if (job == null || !job.event.getId().equals(eventId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Hesabat tapılmadı");
+        }
+        if (!job.organizerEmail.equals(organizerEmail)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+        return job;
+    }
+
+    private static String extension(Format format) {
+        return format.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class ReportJob {
+        final String  id = UUID.randomUUID().toString();
+        final Event   event;
+        final Format  format;
+        final String  organizerEmail;
+        final Path    file;
+        final long    total;
+        final Instant createdAt = Instant.now();
+
+        volatile Status  status = Status.QUEUED;
+        volatile long    rows;
+        volatile boolean cached;
+        volatile String  error;
+
+        ReportJob(Event event, Format format, String organizerEmail, Path file, long total) {
+            this.event          = event;
+            this.format         = format;
+            this.organizerEmail = organizerEmail;
+            this.file           = file;
+            this.total          = total;
+        }
+
+        int percent() {
+            if (status == Status.DONE) return 100;
+            return total > 0 ? (int) Math.min(99, rows * 100 / total) : 0;
+        }
+
+        JobView view() {
+            return new JobView(id, event.getId(), format, status, percent(), rows, total, cached, error);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package az.eticksystem.utils;
+
+import az.eticksystem.event.Event;
+import az.eticksystem.order.Order;
+import az.eticksystem.utils.email.EmailService;
+import az.eticksystem.utils.email.EmailTemplate;
+import az.eticksystem.utils.email.EmailTemplates;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Доставка билетов покупателю после заказа.
+ * Письмо сразу ставится в email_outbox с orderId; PDF рендерит сервер (TicketPdfStore),
+ * и воркер прикладывает его с диска перед отправкой — браузер больше ничего не загружает.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TicketDeliveryService {
+
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final EmailService   emailService;
+    private final EmailTemplates emailTemplates;
+
+    /** Заказ уже сохранён: сбой постановки письма не должен отменять покупку — только лог. */
+    public void enqueue(Order order, Event event, String locale) {
+        if (order.getCustomerEmail() == null || order.getCustomerEmail().isBlank()) return;
+        try {
+            String eventName = Objects.requireNonNullElse(event.getTitle(), "");
+            EmailTemplate.Rendered message = emailTemplates.render("ticket", locale, Map.of(
+                    "buyerName", Objects.requireNonNullElse(order.getCustomerName(), ""),
+                    "eventName", eventName,
+                    "eventDate", eventDate(event),
+                    "location",  Boolean.TRUE.equals(event.getIsPhysical())
+                            ? Objects.requireNonNullElse(event.getVenueName(), "") : "Online Event"));
+
+            emailService.sendOrderTickets(order.getCustomerEmail(), message, order.getId(),
+                    "Bilet_" + eventName.replace(" ", "_") + ".pdf");
+        } catch (RuntimeException e) {
+            log.error("Ticket delivery enqueue failed: order={} {}", order.getId(), e.getMessage(), e);
+        }
+    }
+
+    private static String eventDate(Event event) {
+        String date = event.getEventDate() != null ? event.getEventDate().toString() : "";
+        String time = event.getStartTime() != null ? event.getStartTime().format(TIME_FMT) : "";
+        return (date + " " + time).trim();
+    }
+}
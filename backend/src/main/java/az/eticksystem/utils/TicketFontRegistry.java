@@ -0,0 +1,221 @@
+package az.eticksystem.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.NamingTable;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.FontMapping;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * TrueType-шрифты для билетов.
+ * Файл шрифта разбирается один раз за время жизни процесса и переиспользуется всеми запросами
+ * (таблицы TrueTypeFont читаются под его собственной блокировкой). В документ шрифт встраивается
+ * подмножеством (PDType0Font, embedSubset) — только глифы, реально использованные на билетах.
+ *
+ * Поиск семейства: каталог app.tickets.fonts-dir → системные шрифты (FontMappers PDFBox) →
+ * app.tickets.default-font. Если TTF нет вовсе — Helvetica без не-ASCII символов, как раньше.
+ */
+@Slf4j
+@Component
+public class TicketFontRegistry {
+
+    private static final Pattern NON_ASCII = Pattern.compile("[^\\x00-\\x7F]");
+
+    // font-family приходит из запроса (generate-pdf открыт без входа) — длина имени и «не найдено» ограничены
+    private static final int MAX_FAMILY_LENGTH = 64;
+    private static final int MAX_MISSING       = 1024;
+
+    private final String defaultFamily;
+
+    // Файлы из fonts-dir: нормализованное семейство + начертание → шрифт
+    private final Map<String, TrueTypeFont> local = new ConcurrentHashMap<>();
+    // Найденные семейства: ключей не больше, чем шрифтов в fonts-dir и в системе
+    private final Map<String, TicketFont> resolved = new ConcurrentHashMap<>();
+    // Ненайденные — LRU, чтобы произвольные имена из запросов не росли без предела
+    private final Set<String> missing = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_MISSING;
+                }
+            }));
+
+    private volatile Optional<TicketFont> fallback;
+
+    public TicketFontRegistry(@Value("${app.tickets.fonts-dir:fonts}") String fontsDir,
+                              @Value("${app.tickets.default-font:DejaVu Sans}") String defaultFamily) {
+        this.defaultFamily = defaultFamily;
+        scan(Paths.get(fontsDir));
+    }
+
+    /**
+     * Шрифт для элемента дизайна. family — значение CSS font-family из редактора
+     * ("Arial, sans-serif"): берётся первое найденное семейство списка.
+     */
+    public TicketFont resolve(String family, boolean bold) {
+        if (family != null) {
+            for (String name : family.split(",")) {
+                Optional<TicketFont> font = lookup(name, bold);
+                if (font.isPresent()) return font.get();
+            }
+        }
+        return lookup(defaultFamily, bold)
+                .or(() -> lookup(defaultFamily, false))
+                .or(this::fallback)
+                .orElse(bold ? TicketFont.HELVETICA_BOLD : TicketFont.HELVETICA);
+    }
+
+    // ── Lookup ────────────────────────────────────────────────────────────
+
+    private Optional<TicketFont> lookup(String family, boolean bold) {
+        String key = key(family, bold);
+        if (key.isEmpty() || key.length() > MAX_FAMILY_LENGTH) return Optional.empty();
+
+        TicketFont font = resolved.get(key);
+        if (font != null) return Optional.of(font);
+        if (missing.contains(key)) return Optional.empty();
+
+        TrueTypeFont ttf = local.containsKey(key) ? local.get(key) : system(family, bold);
+        if (ttf == null) {
+            missing.add(key);
+            return Optional.empty();
+        }
+        return Optional.of(resolved.computeIfAbsent(key, k -> {
+            log.info("Ticket font resolved: {} {} → {}", family.trim(), bold ? "bold" : "regular", name(ttf));
+            return TicketFont.of(ttf);
+        }));
+    }
+
+    // Подстановки FontMappers (Arial → LiberationSans и т.п.) не берём — иначе до default-font не дойдёт
+    private TrueTypeFont system(String family, boolean bold) {
+        String postScript = family.trim().replace(" ", "") + (bold ? "-Bold" : "");
+        FontMapping<TrueTypeFont> mapping = FontMappers.instance().getTrueTypeFont(postScript, null);
+        return mapping != null && !mapping.isFallback() ? mapping.getFont() : null;
+    }
+
+    private Optional<TicketFont> fallback() {
+        Optional<TicketFont> font = fallback;
+        if (font == null) {
+            synchronized (this) {
+                font = fallback;
+                if (font == null) {
+                    FontMapping<TrueTypeFont> mapping = FontMappers.instance().getTrueTypeFont(defaultFamily, null);
+                    if (mapping == null) {
+                        log.warn("No TrueType font available, tickets fall back to Helvetica (ASCII only)");
+                    }
+                    font = fallback = mapping != null ? Optional.of(TicketFont.of(mapping.getFont())) : Optional.empty();
+                }
+            }
+        }
+        return font;
+    }
+
+    private void scan(Path dir) {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{ttf,TTF}")) {
+            for (Path file : files) {
+                try {
+                    TrueTypeFont ttf = new TTFParser().parse(file.toFile());
+                    NamingTable naming = ttf.getNaming();
+                    String family = naming != null && naming.getFontFamily() != null
+                            ? naming.getFontFamily() : file.getFileName().toString().replaceFirst("\\.[^.]+$", "");
+                    boolean bold = ttf.getHeader().getMacStyle() % 2 == 1;
+                    local.putIfAbsent(key(family, bold), ttf);
+                } catch (IOException e) {
+                    log.warn("Ticket font skipped: {} {}", file, e.getMessage());
+                }
+            }
+            log.info("Ticket fonts loaded from {}: {}", dir.toAbsolutePath(), local.size());
+        } catch (IOException e) {
+            log.warn("Ticket fonts dir unreadable: {} {}", dir, e.getMessage());
+        }
+    }
+
+    private static String key(String family, boolean bold) {
+        String normalized = family == null ? "" : family.trim().replace("\"", "").replace("'", "")
+                .replace(" ", "").toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? "" : normalized + (bold ? "|bold" : "|regular");
+    }
+
+    private static String name(TrueTypeFont ttf) {
+        try {
+            return ttf.getName();
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    // ── Font handle ───────────────────────────────────────────────────────
+
+    /** Разобранный шрифт; ttf == null — стандартная Helvetica без встраивания. */
+    public record TicketFont(TrueTypeFont ttf, CmapLookup cmap, PDFont standard) {
+
+        static final TicketFont HELVETICA      = new TicketFont(null, null, PDType1Font.HELVETICA);
+        static final TicketFont HELVETICA_BOLD = new TicketFont(null, null, PDType1Font.HELVETICA_BOLD);
+
+        static TicketFont of(TrueTypeFont ttf) {
+            try {
+                return new TicketFont(ttf, ttf.getUnicodeCmapLookup(), null);
+            } catch (IOException e) {
+                throw new IllegalStateException("Şrift oxuna bilmədi", e);
+            }
+        }
+
+        /** Текст без символов, которых нет в шрифте (иначе showText бросит исключение). */
+        public String printable(String text) {
+            if (cmap == null) return NON_ASCII.matcher(text).replaceAll("");
+            StringBuilder sb = new StringBuilder(text.length());
+            text.codePoints().forEach(cp -> {
+                if (cmap.getGlyphId(cp) > 0) sb.appendCodePoint(cp);
+            });
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Шрифты одного документа: каждый TicketFont загружается в документ один раз
+     * и встраивается подмножеством при сохранении.
+     */
+    public static final class DocumentFonts {
+
+        private final PDDocument              document;
+        private final Map<TicketFont, PDFont> loaded = new IdentityHashMap<>();
+
+        public DocumentFonts(PDDocument document) {
+            this.document = document;
+        }
+
+        public PDFont get(TicketFont font) throws IOException {
+            if (font.ttf() == null) return font.standard();
+            PDFont pdFont = loaded.get(font);
+            if (pdFont == null) {
+                pdFont = PDType0Font.load(document, font.ttf(), true);
+                loaded.put(font, pdFont);
+            }
+            return pdFont;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package az.eticksystem.utils;
+
+import az.eticksystem.event.DashboardEvent;
+import az.eticksystem.event.Event;
+import az.eticksystem.event.EventDesign;
+import az.eticksystem.event.EventLayout;
+import az.eticksystem.event.EventRepository;
+import az.eticksystem.event.EventStorageService;
+import az.eticksystem.event.SalesCounterService;
+import az.eticksystem.event.Seat;
+import az.eticksystem.event.SeatClaimService;
+import az.eticksystem.event.SeatGrid;
+import az.eticksystem.event.TicketTier;
+import az.eticksystem.order.Order;
+import az.eticksystem.order.OrderTicket;
+import az.eticksystem.user.UserRepository;
+import az.eticksystem.utils.email.OutboxAttachmentSource;
+import az.eticksystem.utils.email.OutboxEmail;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Готовые PDF-билеты заказов на диске.
+ * После заказа (ORDER_CREATED / SEATS_BOOKED) фоновый пул рендерит билеты по текущему ticketDesign ивента.
+ * Файл адресуется содержимым: {orderId}-{sha256(версия дизайна + данные билетов)}.pdf — повторная выдача
+ * без изменений отдаёт тот же файл, новый дизайн или снятые места дают новый хеш и один перерендер.
+ * Письмо с билетами (kind TICKET) берёт вложение отсюда же — outbox читает файл, но не удаляет его.
+ * Скомпилированный план держится по id версии дизайна — версии неизменяемы (EventDesign).
+ * Ивент без дизайна получает тот же шаблон, что показывает фронт (TICKET_TEMPLATES.classicDark),
+ * — он лежит в templates/ticket/classic-dark.json.
+ */
+@Slf4j
+@Service
+public class TicketPdfStore implements OutboxAttachmentSource {
+
+    // Меняется вместе с логикой рендера — старые файлы не должны совпасть по хешу
+    private static final String RENDERER_VERSION = "2";
+    private static final int    PLAN_CACHE_SIZE  = 256;
+
+    // Шаблон по умолчанию — копия TICKET_TEMPLATES.classicDark из frontend/lib/ticket-templates.ts
+    private static final String DEFAULT_DESIGN    = "templates/ticket/classic-dark.json";
+    private static final String DEFAULT_DESIGN_ID = "default:classicDark";
+
+    private final EventRepository     eventRepository;
+    private final EventStorageService eventStorageService;
+    private final SeatClaimService    seatClaimService;
+    private final UserRepository      userRepository;
+    private final MongoTemplate       mongoTemplate;
+    private final TicketFontRegistry  fontRegistry;
+    private final Path                dir;
+    private final ThreadPoolExecutor  workers;
+    private final TicketRenderPlan    defaultPlan;
+
+    // Один рендер на файл: параллельный запрос того же заказа ждёт его, а не рисует второй раз
+    private final ConcurrentMap<Path, CompletableFuture<Path>> rendering = new ConcurrentHashMap<>();
+
+    private final Map<String, TicketRenderPlan> plans = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TicketRenderPlan> eldest) {
+                    return size() > PLAN_CACHE_SIZE;
+                }
+            });
+
+    public TicketPdfStore(EventRepository eventRepository,
+                          EventStorageService eventStorageService,
+                          SeatClaimService seatClaimService,
+                          UserRepository userRepository,
+                          MongoTemplate mongoTemplate,
+                          TicketFontRegistry fontRegistry,
+                          @Value("${app.tickets.pdf-dir:data/tickets}") String dir,
+                          @Value("${app.tickets.render-workers:2}") int workers,
+                          @Value("${app.tickets.render-queue-capacity:1000}") int queueCapacity) {
+        this.eventRepository     = eventRepository;
+        this.eventStorageService = eventStorageService;
+        this.seatClaimService    = seatClaimService;
+        this.userRepository      = userRepository;
+        this.mongoTemplate       = mongoTemplate;
+        this.fontRegistry        = fontRegistry;
+        this.dir                 = Paths.get(dir);
+        this.workers             = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "ticket-render");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.defaultPlan         = TicketRenderPlan.compile(defaultDesign(), fontRegistry);
+    }
+
+    // ── Pre-render ────────────────────────────────────────────────────────
+
+    @EventListener
+    public void on(DashboardEvent event) {
+        if (event.type() != DashboardEvent.Type.ORDER_CREATED && event.type() != DashboardEvent.Type.SEATS_BOOKED) return;
+        Object orderId = event.data().get("orderId");
+        if (orderId == null) return;
+        try {
+            workers.execute(() -> prerender(orderId.toString()));
+        } catch (RejectedExecutionException e) {
+            // Не страшно: файл отрисуется при первом скачивании
+            log.warn("Ticket pre-render queue full, order={} will render on demand", orderId);
+        }
+    }
+
+    private void prerender(String orderId) {
+        try {
+            Order order = mongoTemplate.findById(orderId, Order.class);
+            if (order != null) pdf(order);
+        } catch (Exception e) {
+            log.error("Ticket pre-render failed: order={} {}", orderId, e.getMessage(), e);
+        }
+    }
+
+    // ── Read ──────────────────────────────────────────────────────────────
+
+    /**
+     * Заказ для скачивания билетов: организатор ивента по токену
+     * или покупатель — по коду любого своего билета (приходит ему в ответе на заказ).
+     */
+    public Order checkAccess(String orderId, String ticketCode, String organizerEmail) {
+        Order order = mongoTemplate.findById(orderId, Order.class);
+        if (order == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Sifariş tapılmadı");
+        }
+        boolean buyer = ticketCode != null && order.getTickets() != null
+                && order.getTickets().stream().anyMatch(t -> ticketCode.equals(t.getQrCode()));
+        if (buyer) return order;
+
+        if (organizerEmail != null) {
+            Event event = eventRepository.findById(order.getEventId()).orElse(null);
+            if (event != null && organizerEmail.equals(event.getOrganizerId())) return order;
+        }
+        throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+    }
+
+    /** Готовый PDF билетов заказа; рендерит, только если для текущих дизайна и данных файла ещё нет. */
+    public Path pdf(Order order) throws IOException {
+        Event event = eventRepository.findById(order.getEventId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Tədbir tapılmadı"));
+        // Дизайн не задан — как и фронт, рисуем шаблоном по умолчанию
+        EventDesign design   = eventStorageService.design(event);
+        boolean     custom   = design != null && design.getTicketDesign() instanceof Map<?, ?>;
+        String      designId = custom ? design.getId() : DEFAULT_DESIGN_ID;
+
+        List<Map<String, Object>> tickets = ticketData(event, order);
+        Path file = file(order, hash(designId, tickets));
+        if (Files.exists(file)) return file;
+
+        CompletableFuture<Path> created  = new CompletableFuture<>();
+        CompletableFuture<Path> existing = rendering.putIfAbsent(file, created);
+        if (existing != null) return await(existing);
+
+        try {
+            render(custom ? plan(design) : defaultPlan, tickets, file);
+            deleteOlderVersions(order, file);
+            created.complete(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(file, created);
+        }
+    }
+
+    // ── Email attachment ──────────────────────────────────────────────────
+
+    @Override
+    public String kind() {
+        return "TICKET";
+    }
+
+    @Override
+    public Path attachment(OutboxEmail email) throws IOException {
+        Order order = email.getOrderId() != null ? mongoTemplate.findById(email.getOrderId(), Order.class) : null;
+        if (order == null) {
+            throw new MailPreparationException("Order not found: " + email.getOrderId());
+        }
+        try {
+            return pdf(order);
+        } catch (ResponseStatusException e) {
+            // Ивента нет — повтор не поможет
+            if (e.getStatusCode().is4xxClientError()) {
+                throw new MailPreparationException("Ticket PDF unavailable: order=" + order.getId() + " " + e.getReason(), e);
+            }
+            throw e;
+        }
+    }
+
+    public static String fileName(Order order) {
+        return "Bilet_" + order.getId() + ".pdf";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ── Render ────────────────────────────────────────────────────────────
+
+    @SuppressWarnings("unchecked")
+    private TicketRenderPlan plan(EventDesign design) {
+        TicketRenderPlan plan = plans.get(design.getId());
+        if (plan == null) {
+            plan = TicketRenderPlan.compile((Map<String, Object>) design.getTicketDesign(), fontRegistry);
+            plans.put(design.getId(), plan);
+        }
+        return plan;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> defaultDesign() {
+        try (InputStream in = new ClassPathResource(DEFAULT_DESIGN).getInputStream()) {
+            return new ObjectMapper().readValue(in, Map.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Default ticket design unreadable: " + DEFAULT_DESIGN, e);
+        }
+    }
+
+    private void render(TicketRenderPlan plan, List<Map<String, Object>> tickets, Path file) throws IOException {
+        long started = System.currentTimeMillis();
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try (PDDocument document = new PDDocument()) {
+            plan.render(document, tickets);
+            document.save(tmp.toFile());
+            // Читатель никогда не видит недописанный файл
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        log.info("Ticket PDF rendered: {} tickets={} in {} ms", file.getFileName(), tickets.size(),
+                System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Данные билетов для тегов дизайна — те же ключи, что подставляет фронт при покупке
+     * ({{Guest_Name}}, {{Seat_Info}}, ...). Порядок — как seatIds заказа.
+     */
+    private List<Map<String, Object>> ticketData(Event event, Order order) {
+        Map<String, String> tierNames = new HashMap<>();
+        if (event.getTiers() != null) {
+            for (TicketTier tier : event.getTiers()) tierNames.put(tier.getTierId(), tier.getName());
+        }
+        SeatLabels seatLabels = SeatLabels.of(eventStorageService.layout(event), event);
+        SeatGrid   grid       = seatClaimService.gridFor(event.getId());
+
+        String[] company = new String[]{"Təşkilatçı", "-"};
+        userRepository.findByEmail(event.getOrganizerId()).ifPresent(user -> {
+            if (user.getCompanyName() != null && !user.getCompanyName().isEmpty()) company[0] = user.getCompanyName();
+            else if (user.getFullName() != null) company[0] = user.getFullName();
+            if (user.getPhone() != null) company[1] = user.getPhone();
+        });
+
+        String location = Boolean.TRUE.equals(event.getIsPhysical())
+                ? Objects.requireNonNullElse(event.getVenueName(), Objects.requireNonNullElse(event.getAddress(), ""))
+                : "Online Event";
+
+        List<Map<String, Object>> tickets = new ArrayList<>();
+        for (OrderTicket ticket : order.getTickets() != null ? order.getTickets() : List.<OrderTicket>of()) {
+            Map<String, Object> data = new TreeMap<>(); // стабильный порядок для хеша
+            data.put("Event_Name",    Objects.requireNonNullElse(event.getTitle(), ""));
+            data.put("Event_Date",    event.getEventDate() != null ? event.getEventDate().toString() : "");
+            data.put("Location",      location);
+            data.put("Guest_Name",    Objects.requireNonNullElse(order.getCustomerName(), ""));
+            data.put("Ticket_Type",   tierNames.getOrDefault(SalesCounterService.tierOf(grid, ticket.getSeatId()), "Standard"));
+            data.put("Seat_Info",     seatLabels.label(ticket.getSeatId(), event));
+            data.put("Company_Name",  company[0]);
+            data.put("Company_Phone", company[1]);
+            data.put("Ticket_Number", Objects.requireNonNullElse(ticket.getTicketNumber(), ""));
+            data.put("qrData",        ticket.getQrCode());
+            tickets.add(data);
+        }
+        return tickets;
+    }
+
+    // ── Cache files ───────────────────────────────────────────────────────
+
+    private Path file(Order order, String hash) {
+        if (!order.getEventId().matches("[A-Za-z0-9_-]+") || !order.getId().matches("[A-Za-z0-9_-]+")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Yanlış sifariş ID");
+        }
+        return dir.resolve(order.getEventId()).resolve(order.getId() + "-" + hash + ".pdf");
+    }
+
+    private static String hash(String designId, List<Map<String, Object>> tickets) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((RENDERER_VERSION + "|" + designId + "|").getBytes(StandardCharsets.UTF_8));
+            digest.update(tickets.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 32);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Файлы заказа с прежним хешем больше не выдаются — дизайн или данные уже другие
+    private void deleteOlderVersions(Order order, Path current) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(current.getParent(), order.getId() + "-*.pdf")) {
+            for (Path f : files) {
+                if (!f.equals(current)) Files.deleteIfExists(f);
+            }
+        } catch (IOException e) {
+            log.warn("Ticket PDF cleanup failed: order={} {}", order.getId(), e.getMessage());
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bilet PDF gözlənilərkən kəsildi", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /** Подписи мест как на публичной странице: ряд — буква (или номер) по порядку рядов, место — от левого края. */
+    private record SeatLabels(Map<Integer, String> rows, int minCol) {
+
+        static SeatLabels of(EventLayout layout, Event event) {
+            List<Seat> seats = layout != null && layout.getSeats() != null ? layout.getSeats() : List.of();
+            boolean letters = !(layout != null && layout.getSeatMapConfig() instanceof Map<?, ?> config
+                    && "numbers".equals(config.get("rowLabelType")));
+
+            TreeSet<Integer> sortedRows = new TreeSet<>();
+            int minCol = Integer.MAX_VALUE;
+            for (Seat seat : seats) {
+                sortedRows.add(seat.getRow());
+                minCol = Math.min(minCol, seat.getCol());
+            }
+
+            Map<Integer, String> rows = new HashMap<>();
+            int i = 0;
+            for (Integer row : sortedRows) {
+                rows.put(row, letters ? letterLabel(i) : String.valueOf(i + 1));
+                i++;
+            }
+            return new SeatLabels(rows, minCol == Integer.MAX_VALUE ? 0 : minCol);
+        }
+
+        String label(String seatId, Event event) {
+            String[] rc = seatId != null ? seatId.split("_") : new String[0];
+            if (rc.length == 2 && rows.containsKey(parse(rc[0]))) {
+                return "Sıra " + rows.get(parse(rc[0])) + ", Yer " + (parse(rc[1]) - minCol + 1);
+            }
+            return Boolean.TRUE.equals(event.getIsPhysical()) ? "General Admission" : "Online Access";
+        }
+
+        private static int parse(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return Integer.MIN_VALUE;
+            }
+        }
+
+        private static String letterLabel(int index) {
+            StringBuilder label = new StringBuilder();
+            for (int n = index; n >= 0; n = n / 26 - 1) {
+                label.insert(0, (char) ('A' + n % 26));
+            }
+            return label.toString();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package az.eticksystem.utils;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Скомпилированный дизайн билета.
+ * Цвета, координаты, размеры, шрифты и слоты {{тегов}} разбираются из Map один раз в compile,
+ * дальше план без повторного разбора применяется к любому числу билетов.
+ * QR-коды кодируются параллельно порциями по QR_BATCH билетов, страницы PDF пишутся последовательно
+ * (PDDocument не потокобезопасен). QR кодируется в матрицу модулей один раз на билет и рисуется прямо
+ * в контент страницы векторными прямоугольниками (отрезок тёмных модулей строки = один rect) — без растра,
+ * XObject и PNG-сжатия, чёткий при любом масштабе. План неизменяем.
+ */
+final class TicketRenderPlan {
+
+    static final float WIDTH  = 360f;
+    static final float HEIGHT = 640f;
+
+    private static final String  DEFAULT_BG        = "#09090b";
+    private static final String  DEFAULT_COLOR     = "#ffffff";
+    private static final int     DEFAULT_FONT_SIZE = 16;
+    private static final float   DEFAULT_TEXT_X    = 24;
+    private static final int     QR_BATCH          = 256;
+    private static final Pattern TAG               = Pattern.compile("\\{\\{([^{}]+)}}");
+
+    // QRCodeWriter без состояния — один на все потоки
+    private static final QRCodeWriter QR_WRITER = new QRCodeWriter();
+
+    private final Color         background;
+    private final List<Element> elements;
+    private final boolean       hasQr;
+
+    private TicketRenderPlan(Color background, List<Element> elements) {
+        this.background = background;
+        this.elements   = List.copyOf(elements);
+        this.hasQr      = elements.stream().anyMatch(e -> e instanceof Qr);
+    }
+
+    // ── Compile ───────────────────────────────────────────────────────────
+
+    @SuppressWarnings("unchecked")
+    static TicketRenderPlan compile(Map<String, Object> design, TicketFontRegistry fonts) {
+        if (design == null) {
+            throw new IllegalArgumentException("Bilet dizaynı boşdur");
+        }
+        Color  background  = color(design.get("bgColor"), DEFAULT_BG);
+        // Семейство на весь дизайн; элемент может задать своё
+        String defaultFont = design.get("fontFamily") instanceof String s ? s : null;
+
+        List<Element> compiled = new ArrayList<>();
+        Object raw = design.get("elements");
+        if (raw instanceof List<?> list) {
+            for (Object item : list) {
+                if (!(item instanceof Map<?, ?> el)) continue;
+                compiled.add(compileElement((Map<String, Object>) el, defaultFont, fonts));
+            }
+        }
+        return new TicketRenderPlan(background, compiled);
+    }
+
+    private static Element compileElement(Map<String, Object> el, String defaultFont, TicketFontRegistry fonts) {
+        String type     = String.valueOf(el.get("type"));
+        float  x        = number(el.get("x"), 0);
+        int    fontSize = (int) number(el.get("fontSize"), DEFAULT_FONT_SIZE);
+        // Редактор считает y сверху, PDF — снизу
+        float  y        = HEIGHT - number(el.get("y"), 0) - fontSize;
+
+        return switch (type) {
+            case "text" -> new Text(x > 0 ? x : DEFAULT_TEXT_X, y, fontSize,
+                    color(el.get("color"), DEFAULT_COLOR), font(el, defaultFont, fonts), parts((String) el.get("content")));
+            case "qr"   -> new Qr(x, y, fontSize);
+            default     -> new Skip();
+        };
+    }
+
+    // Без fontWeight элемент жирный — так билеты печатались до поддержки начертаний
+    private static TicketFontRegistry.TicketFont font(Map<String, Object> el, String defaultFont, TicketFontRegistry fonts) {
+        String  family = el.get("fontFamily") instanceof String s && !s.isBlank() ? s : defaultFont;
+        Object  weight = el.get("fontWeight");
+        boolean bold   = weight == null || "bold".equals(weight);
+        return fonts.resolve(family, bold);
+    }
+
+    /** Шаблон текста, разрезанный на литералы и ключи тегов. */
+    private static List<Part> parts(String content) {
+        List<Part> parts = new ArrayList<>();
+        if (content == null) return parts;
+        Matcher m = TAG.matcher(content);
+        int last = 0;
+        while (m.find()) {
+            if (m.start() > last) parts.add(new Literal(content.substring(last, m.start())));
+            parts.add(new Tag(m.group(1)));
+            last = m.end();
+        }
+        if (last < content.length()) parts.add(new Literal(content.substring(last)));
+        return List.copyOf(parts);
+    }
+
+    // ── Render ────────────────────────────────────────────────────────────
+
+    /** Добавляет в документ по странице на билет. */
+    void render(PDDocument document, List<Map<String, Object>> tickets) throws IOException {
+        TicketFontRegistry.DocumentFonts fonts = new TicketFontRegistry.DocumentFonts(document);
+        for (int from = 0; from < tickets.size(); from += QR_BATCH) {
+            List<Map<String, Object>> batch = tickets.subList(from, Math.min(from + QR_BATCH, tickets.size()));
+
+            // Кодирование QR — чистый CPU, раскладываем по ядрам
+            List<BitMatrix> qrMatrices = hasQr
+                    ? batch.parallelStream().map(TicketRenderPlan::encodeQr).toList()
+                    : null;
+
+            for (int i = 0; i < batch.size(); i++) {
+                renderPage(document, fonts, batch.get(i), qrMatrices != null ? qrMatrices.get(i) : null);
+            }
+        }
+    }
+
+    private void renderPage(PDDocument document, TicketFontRegistry.DocumentFonts fonts,
+                            Map<String, Object> ticket, BitMatrix qrMatrix) throws IOException {
+        PDPage page = new PDPage(new PDRectangle(WIDTH, HEIGHT));
+        document.addPage(page);
+
+        try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+            // Фон
+            cs.setNonStrokingColor(background);
+            cs.addRect(0, 0, WIDTH, HEIGHT);
+            cs.fill();
+
+            for (Element element : elements) {
+                if (element instanceof Text text) {
+                    cs.beginText();
+                    cs.setFont(fonts.get(text.font()), text.fontSize());
+                    cs.setNonStrokingColor(text.color());
+                    cs.newLineAtOffset(text.x(), text.y());
+                    cs.showText(text.font().printable(fill(text.parts(), ticket)));
+                    cs.endText();
+
+                } else if (element instanceof Qr q) {
+                    drawQr(cs, qrMatrix, q);
+                }
+            }
+        }
+    }
+
+    // Размер 0 — матрица модулей без масштабирования, с обычной тихой зоной
+    private static BitMatrix encodeQr(Map<String, Object> ticket) {
+        try {
+            return QR_WRITER.encode((String) ticket.get("qrData"), BarcodeFormat.QR_CODE, 0, 0);
+        } catch (WriterException e) {
+            throw new IllegalStateException("QR kod yaradıla bilmədi", e);
+        }
+    }
+
+    /** Белая подложка (тихая зона) и тёмные модули одним путём — один fill на весь код. */
+    private static void drawQr(PDPageContentStream cs, BitMatrix matrix, Qr q) throws IOException {
+        int   width  = matrix.getWidth();
+        int   height = matrix.getHeight();
+        float module = q.size() / (float) width;
+
+        cs.setNonStrokingColor(Color.WHITE);
+        cs.addRect(q.x(), q.y(), q.size(), q.size());
+        cs.fill();
+
+        cs.setNonStrokingColor(Color.BLACK);
+        for (int row = 0; row < height; row++) {
+            float y   = q.y() + q.size() - (row + 1) * module;
+            int   col = 0;
+            while (col < width) {
+                if (!matrix.get(col, row)) {
+                    col++;
+                    continue;
+                }
+                int start = col;
+                while (col < width && matrix.get(col, row)) col++;
+                cs.addRect(q.x() + start * module, y, (col - start) * module, module);
+            }
+        }
+        cs.fill();
+    }
+
+    // Неизвестный тег остаётся в тексте как есть
+    private static String fill(List<Part> parts, Map<String, Object> ticket) {
+        StringBuilder sb = new StringBuilder();
+        for (Part part : parts) {
+            if (part instanceof Literal literal) {
+                sb.append(literal.text());
+            } else if (part instanceof Tag tag) {
+                if (ticket.containsKey(tag.key())) sb.append(ticket.get(tag.key()));
+                else sb.append("{{").append(tag.key()).append("}}");
+            }
+        }
+        return sb.toString();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private static float number(Object value, float fallback) {
+        if (value == null) return fallback;
+        if (value instanceof Number n) return n.floatValue();
+        try {
+            return Float.parseFloat(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Dizayn elementində yanlış ədəd: " + value, e);
+        }
+    }
+
+    private static Color color(Object value, String fallback) {
+        return Color.decode(value instanceof String s && !s.isBlank() ? s : fallback);
+    }
+
+    private sealed interface Element permits Text, Qr, Skip {}
+
+    private record Text(float x, float y, int fontSize, Color color,
+                        TicketFontRegistry.TicketFont font, List<Part> parts) implements Element {}
+
+    private record Qr(float x, float y, int size) implements Element {}
+
+    private record Skip() implements Element {}
+
+    private sealed interface Part permits Literal, Tag {}
+
+    private record Literal(String text) implements Part {}
+
+    private record Tag(String key) implements Part {}
+}
@@ -0,0 +1,328 @@
+package az.eticksystem.utils.email;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Надёжная отправка email через коллекцию email_outbox.
+ * enqueue сохраняет письмо и сразу пытается отдать его пулу; всё, что не влезло или упало,
+ * забирает поллер. Захват — findAndModify (PENDING → SENDING), поэтому несколько инстансов
+ * не отправят одно письмо дважды; SENDING с истёкшим lockedUntil считается брошенным и забирается снова.
+ * Каждый захват получает свой claimToken, и итог отправки пишется только с ним: воркер, чей захват
+ * уже перехвачен, не перетрёт результат нового. Перехват брошенного письма считается попыткой —
+ * письмо, на котором процесс падает, не крутится бесконечно.
+ *
+ * Ограничения: пул фиксированного размера с ограниченной очередью, не больше per-domain-concurrency
+ * одновременных писем на домен получателя (gmail.com не забивает все потоки).
+ * Вложение outbox не хранит: OutboxAttachmentSource по kind письма отдаёт файл прямо перед отправкой
+ * (PDF билетов заказа), файл принадлежит источнику.
+ * Ошибки — повтор с экспоненциальной задержкой до max-attempts, затем FAILED.
+ * Метрики: email.outbox.pending / failed / inflight, таймер email.send {kind, result}.
+ */
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+    private static final Duration LOCK = Duration.ofMinutes(5);
+
+    private final MongoTemplate      mongoTemplate;
+    private final EmailTransport     transport;
+    private final MeterRegistry      meterRegistry;
+    private final int                perDomain;
+    private final int                maxAttempts;
+    private final Duration           baseBackoff;
+    private final Duration           maxBackoff;
+    private final ThreadPoolExecutor workers;
+
+    // kind письма → источник вложения, которое готовится к отправке
+    private final Map<String, OutboxAttachmentSource> attachmentSources;
+
+    // Захваченные, но ещё не завершённые письма по доменам
+    private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong failed  = new AtomicLong();
+
+    public EmailOutboxService(MongoTemplate mongoTemplate,
+                              EmailTransport transport,
+                              MeterRegistry meterRegistry,
+                              List<OutboxAttachmentSource> attachmentSources,
+                              @Value("${app.email.workers:8}") int workers,
+                              @Value("${app.email.queue-capacity:100}") int queueCapacity,
+                              @Value("${app.email.per-domain-concurrency:4}") int perDomain,
+                              @Value("${app.email.max-attempts:8}") int maxAttempts,
+                              @Value("${app.email.retry-base-seconds:30}") long baseBackoffSeconds,
+                              @Value("${app.email.retry-max-minutes:60}") long maxBackoffMinutes) {
+        this.mongoTemplate  = mongoTemplate;
+        this.transport      = transport;
+        this.meterRegistry  = meterRegistry;
+        this.perDomain      = perDomain;
+        this.maxAttempts    = maxAttempts;
+        this.baseBackoff    = Duration.ofSeconds(baseBackoffSeconds);
+        this.maxBackoff     = Duration.ofMinutes(maxBackoffMinutes);
+        this.workers        = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "email-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.attachmentSources = attachmentSources.stream()
+                .collect(Collectors.toMap(OutboxAttachmentSource::kind, source -> source));
+
+        Gauge.builder("email.outbox.pending", pending, AtomicLong::get)
+                .description("Писем в очереди на отправку").register(meterRegistry);
+        Gauge.builder("email.outbox.failed", failed, AtomicLong::get)
+                .description("Писем, не отправленных после всех попыток").register(meterRegistry);
+        Gauge.builder("email.outbox.inflight", inFlight,
+                        map -> map.values().stream().mapToInt(AtomicInteger::get).sum())
+                .description("Писем в работе у пула").register(meterRegistry);
+    }
+
+    // ── Enqueue ───────────────────────────────────────────────────────────
+
+    /** Сохраняет письмо в outbox; отправка асинхронная, потерять его после возврата уже нельзя. */
+    public OutboxEmail enqueue(OutboxEmail email) {
+        LocalDateTime now = LocalDateTime.now();
+        email.setDomain(domainOf(email.getTo()));
+        email.setStatus(OutboxEmail.Status.PENDING);
+        email.setAttempts(0);
+        email.setNextAttemptAt(now);
+        email.setCreatedAt(now);
+        OutboxEmail saved = mongoTemplate.insert(email);
+        pending.incrementAndGet();
+
+        // Свободный слот есть — не ждём поллера
+        if (workers.getQueue().remainingCapacity() > 0 && !saturated(saved.getDomain())) {
+            OutboxEmail claimed = claim(Criteria.where("_id").is(saved.getId()).and("status").is(OutboxEmail.Status.PENDING));
+            if (claimed != null) submit(claimed);
+        }
+        return saved;
+    }
+
+    // ── Poll ──────────────────────────────────────────────────────────────
+
+    @Scheduled(fixedDelayString = "${app.email.poll-interval-ms:2000}")
+    public void poll() {
+        try {
+            int room = workers.getQueue().remainingCapacity();
+            while (room-- > 0) {
+                OutboxEmail email = claim(due());
+                if (email == null) break;
+                submit(email);
+            }
+            pending.set(mongoTemplate.count(Query.query(Criteria.where("status").is(OutboxEmail.Status.PENDING)), OutboxEmail.class));
+            failed.set(mongoTemplate.count(Query.query(Criteria.where("status").is(OutboxEmail.Status.FAILED)), OutboxEmail.class));
+        } catch (Exception e) {
+            log.warn("Email outbox poll failed: {}", e.getMessage());
+        }
+    }
+
+    // Готовые к попытке письма, кроме доменов, у которых лимит параллельных отправок уже занят
+    private Criteria due() {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria due = new Criteria().orOperator(
+                Criteria.where("status").is(OutboxEmail.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(OutboxEmail.Status.SENDING).and("lockedUntil").lt(now));
+        List<String> saturated = inFlight.entrySet().stream()
+                .filter(e -> e.getValue().get() >= perDomain)
+                .map(Map.Entry::getKey)
+                .toList();
+        return saturated.isEmpty() ? due : new Criteria().andOperator(due, Criteria.where("domain").nin(saturated));
+    }
+
+    private OutboxEmail claim(Criteria criteria) {
+        Query query = Query.query(criteria).with(Sort.by("nextAttemptAt"));
+        while (true) {
+            String        token       = UUID.randomUUID().toString();
+            LocalDateTime lockedUntil = LocalDateTime.now().plus(LOCK);
+            Update update = new Update()
+                    .set("status", OutboxEmail.Status.SENDING)
+                    .set("lockedUntil", lockedUntil)
+                    .set("claimToken", token);
+            // Прежний статус нужен, чтобы отличить перехват брошенного SENDING от обычного захвата
+            OutboxEmail email = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options(), OutboxEmail.class);
+            if (email == null) return null;
+
+            boolean abandoned = email.getStatus() == OutboxEmail.Status.SENDING;
+            email.setStatus(OutboxEmail.Status.SENDING);
+            email.setLockedUntil(lockedUntil);
+            email.setClaimToken(token);
+            if (!abandoned) {
+                inFlight.computeIfAbsent(email.getDomain(), d -> new AtomicInteger()).incrementAndGet();
+                return email;
+            }
+
+            // Прошлый захват не завершился за LOCK — воркер умер или завис на этом письме
+            email.setAttempts(email.getAttempts() + 1);
+            if (email.getAttempts() < maxAttempts) {
+                mongoTemplate.updateFirst(sending(email), new Update().set("attempts", email.getAttempts()), OutboxEmail.class);
+                inFlight.computeIfAbsent(email.getDomain(), d -> new AtomicInteger()).incrementAndGet();
+                return email;
+            }
+            mongoTemplate.updateFirst(sending(email), new Update()
+                    .set("status", OutboxEmail.Status.FAILED)
+                    .set("attempts", email.getAttempts())
+                    .set("lastError", "Send did not finish within " + LOCK.toMinutes() + " min")
+                    .unset("lockedUntil"), OutboxEmail.class);
+            log.error("Email failed permanently: id={} kind={} to={} order={} attempts={} (abandoned send)",
+                    email.getId(), email.getKind(), email.getTo(), email.getOrderId(), email.getAttempts());
+        }
+    }
+
+    private void submit(OutboxEmail email) {
+        try {
+            workers.execute(() -> deliver(email));
+        } catch (RejectedExecutionException e) {
+            // Очередь пула полна — письмо вернётся поллеру
+            finish(email);
+            mongoTemplate.updateFirst(sending(email), new Update()
+                    .set("status", OutboxEmail.Status.PENDING).unset("lockedUntil"), OutboxEmail.class);
+        }
+    }
+
+    // ── Deliver ───────────────────────────────────────────────────────────
+
+    private void deliver(OutboxEmail email) {
+        long started = System.nanoTime();
+        try {
+            resolveAttachment(email);
+            transport.send(email);
+            record(email, "sent", started);
+            boolean owned = mongoTemplate.updateFirst(sending(email), new Update()
+                    .set("status", OutboxEmail.Status.SENT)
+                    .set("sentAt", LocalDateTime.now())
+                    .set("attempts", email.getAttempts() + 1)
+                    .unset("lockedUntil")
+                    .unset("lastError"), OutboxEmail.class).getModifiedCount() > 0;
+            // Захват перехвачен — итог письма запишет другой воркер
+            if (!owned) log.warn("Email sent after its claim expired: id={} to={}", email.getId(), email.getTo());
+            log.info("Email sent: id={} kind={} to={}", email.getId(), email.getKind(), email.getTo());
+        } catch (Exception e) {
+            record(email, "failed", started);
+            retryOrFail(email, e);
+        } finally {
+            finish(email);
+        }
+    }
+
+    private void retryOrFail(OutboxEmail email, Exception e) {
+        int     attempts  = email.getAttempts() + 1;
+        boolean permanent = permanent(e);
+        String  error     = e.getClass().getSimpleName() + ": " + e.getMessage();
+
+        if (permanent || attempts >= maxAttempts) {
+            mongoTemplate.updateFirst(sending(email), new Update()
+                    .set("status", OutboxEmail.Status.FAILED)
+                    .set("attempts", attempts)
+                    .set("lastError", error)
+                    .unset("lockedUntil"), OutboxEmail.class);
+            log.error("Email failed permanently: id={} kind={} to={} order={} attempts={} {}",
+                    email.getId(), email.getKind(), email.getTo(), email.getOrderId(), attempts, error);
+            return;
+        }
+
+        Duration delay = backoff(attempts);
+        mongoTemplate.updateFirst(sending(email), new Update()
+                .set("status", OutboxEmail.Status.PENDING)
+                .set("attempts", attempts)
+                .set("lastError", error)
+                .set("nextAttemptAt", LocalDateTime.now().plus(delay))
+                .unset("lockedUntil"), OutboxEmail.class);
+        log.warn("Email retry scheduled: id={} to={} attempt={} in {}s: {}",
+                email.getId(), email.getTo(), attempts, delay.toSeconds(), error);
+    }
+
+    // base · 2^(n-1), не больше max, ±20% — повторы после сбоя сервера не приходят одной волной
+    private Duration backoff(int attempts) {
+        long base   = baseBackoff.toMillis() << Math.min(attempts - 1, 20);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        long jitter = (long) (capped * (ThreadLocalRandom.current().nextDouble(0.4) - 0.2));
+        return Duration.ofMillis(capped + jitter);
+    }
+
+    // Неверный адрес или письмо, которое не собрать, повтор не исправит
+    private static boolean permanent(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof AddressException || t instanceof MailParseException || t instanceof MailPreparationException) {
+                return true;
+            }
+            if (t instanceof SendFailedException sfe && sfe.getInvalidAddresses() != null
+                    && sfe.getInvalidAddresses().length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────
+
+    private Query sending(OutboxEmail email) {
+        return Query.query(Criteria.where("_id").is(email.getId())
+                .and("status").is(OutboxEmail.Status.SENDING)
+                .and("claimToken").is(email.getClaimToken()));
+    }
+
+    private void finish(OutboxEmail email) {
+        AtomicInteger count = inFlight.get(email.getDomain());
+        if (count != null) count.decrementAndGet();
+    }
+
+    private boolean saturated(String domain) {
+        AtomicInteger count = inFlight.get(domain);
+        return count != null && count.get() >= perDomain;
+    }
+
+    private void record(OutboxEmail email, String result, long startedNanos) {
+        Timer.builder("email.send")
+                .tag("kind", email.getKind() != null ? email.getKind() : "OTHER")
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Вложение от источника не сохраняется в документе: на повторе файл берётся заново (мог перерендериться)
+    private void resolveAttachment(OutboxEmail email) throws Exception {
+        if (email.getAttachmentPath() != null) return;
+        OutboxAttachmentSource source = attachmentSources.get(email.getKind());
+        if (source != null) email.setAttachmentPath(source.attachment(email).toString());
+    }
+
+    private static String domainOf(String address) {
+        int at = address != null ? address.lastIndexOf('@') : -1;
+        return at >= 0 ? address.substring(at + 1).trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Недоставленные SENDING заберёт следующий запуск по истечении lockedUntil
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,114 @@
+package az.eticksystem.utils.email;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разобранный шаблон письма: тема и тело — списки сегментов (литерал / переменная).
+ * {{name}} подставляется с HTML-экранированием, {{{name}}} — как есть (только для доверенной разметки).
+ * Разбор — один раз при старте (EmailTemplates); render только склеивает сегменты
+ * в переиспользуемый StringBuilder потока.
+ */
+public final class EmailTemplate {
+
+    // Буфер потока не держим, если одно письмо раздуло его сверх этого
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    private final String        name;
+    private final int           version;
+    private final String        locale;
+    private final List<Segment> subject;
+    private final List<Segment> body;
+
+    EmailTemplate(String name, int version, String locale, String subject, String body) {
+        this.name    = name;
+        this.version = version;
+        this.locale  = locale;
+        this.subject = parse(subject);
+        this.body    = parse(body);
+    }
+
+    /** Готовое письмо; id — "name.vN.locale", сохраняется в outbox, чтобы знать, какой версией ушло письмо. */
+    public record Rendered(String id, String subject, String html) {}
+
+    public String id() {
+        return name + ".v" + version + "." + locale;
+    }
+
+    public String name()    { return name; }
+    public int    version() { return version; }
+    public String locale()  { return locale; }
+
+    public Rendered render(Map<String, ?> vars) {
+        // В теме HTML не интерпретируется — экранировать нечего
+        return new Rendered(id(), write(subject, vars, false), write(body, vars, true));
+    }
+
+    // ── Render ────────────────────────────────────────────────────────────
+
+    private static String write(List<Segment> segments, Map<String, ?> vars, boolean html) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        for (Segment segment : segments) {
+            if (segment instanceof Literal literal) {
+                sb.append(literal.text());
+            } else if (segment instanceof Var var) {
+                Object value = vars.get(var.name());
+                if (value == null) continue;
+                if (html && !var.raw()) escape(sb, value.toString());
+                else sb.append(value);
+            }
+        }
+        String result = sb.toString();
+        if (sb.capacity() > MAX_RETAINED) BUFFER.remove();
+        return result;
+    }
+
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&'  -> sb.append("&amp;");
+                case '<'  -> sb.append("&lt;");
+                case '>'  -> sb.append("&gt;");
+                case '"'  -> sb.append("&quot;");
+                case '\'' -> sb.append("&#39;");
+                default   -> sb.append(c);
+            }
+        }
+    }
+
+    // ── Parse ─────────────────────────────────────────────────────────────
+
+    private static List<Segment> parse(String text) {
+        List<Segment> segments = new ArrayList<>();
+        int pos = 0;
+        while (pos < text.length()) {
+            int open = text.indexOf("{{", pos);
+            if (open < 0) break;
+
+            boolean raw   = text.startsWith("{{{", open);
+            String  close = raw ? "}}}" : "}}";
+            int     start = open + (raw ? 3 : 2);
+            int     end   = text.indexOf(close, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Незакрытая переменная в шаблоне с позиции " + open);
+            }
+
+            if (open > pos) segments.add(new Literal(text.substring(pos, open)));
+            segments.add(new Var(text.substring(start, end).trim(), raw));
+            pos = end + close.length();
+        }
+        if (pos < text.length()) segments.add(new Literal(text.substring(pos)));
+        return List.copyOf(segments);
+    }
+
+    private sealed interface Segment permits Literal, Var {}
+
+    private record Literal(String text) implements Segment {}
+
+    private record Var(String name, boolean raw) implements Segment {}
+}
@@ -0,0 +1,82 @@
+package az.eticksystem.utils.email;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Шаблоны писем из classpath:templates/email/{name}.v{version}.{locale}.html.
+ * Файл: первая строка "subject: ...", строка "---", дальше HTML тела.
+ * Для каждого (name, locale) берётся старшая версия; нет нужного языка — az.
+ * Все шаблоны разбираются при старте — ошибка в шаблоне не доживает до первого письма.
+ */
+@Slf4j
+@Component
+public class EmailTemplates {
+
+    public static final String DEFAULT_LOCALE = "az";
+
+    private static final String  LOCATION  = "classpath*:templates/email/*.html";
+    private static final Pattern FILE_NAME = Pattern.compile("([a-z0-9-]+)\\.v(\\d+)\\.([a-z]{2})\\.html");
+
+    // name|locale → старшая версия
+    private final Map<String, EmailTemplate> templates = new HashMap<>();
+
+    public EmailTemplates() throws IOException {
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+            Matcher m = FILE_NAME.matcher(String.valueOf(resource.getFilename()));
+            if (!m.matches()) {
+                log.warn("Email template skipped (name.vN.locale.html expected): {}", resource.getFilename());
+                continue;
+            }
+            EmailTemplate template = load(resource, m.group(1), Integer.parseInt(m.group(2)), m.group(3));
+            templates.merge(key(template.name(), template.locale()), template,
+                    (a, b) -> a.version() >= b.version() ? a : b);
+        }
+        log.info("Email templates loaded: {}", templates.values().stream().map(EmailTemplate::id).sorted().toList());
+    }
+
+    public EmailTemplate.Rendered render(String name, String locale, Map<String, ?> vars) {
+        return get(name, locale).render(vars);
+    }
+
+    public EmailTemplate get(String name, String locale) {
+        String lang = locale != null ? locale.trim().toLowerCase(Locale.ROOT) : DEFAULT_LOCALE;
+        EmailTemplate template = templates.get(key(name, lang));
+        if (template == null) template = templates.get(key(name, DEFAULT_LOCALE));
+        if (template == null) {
+            throw new IllegalStateException("Email template not found: " + name);
+        }
+        return template;
+    }
+
+    private static EmailTemplate load(Resource resource, String name, int version, String locale) {
+        try {
+            String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            int    header  = content.indexOf("\n---\n");
+            String first   = header > 0 ? content.substring(0, header).trim() : "";
+            if (!first.startsWith("subject:")) {
+                throw new IllegalStateException("Email template without subject header: " + resource.getFilename());
+            }
+            return new EmailTemplate(name, version, locale,
+                    first.substring("subject:".length()).trim(),
+                    content.substring(header + 5));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Email template unreadable: " + resource.getFilename(), e);
+        }
+    }
+
+    private static String key(String name, String locale) {
+        return name + "|" + locale;
+    }
+}
@@ -0,0 +1,30 @@
+package az.eticksystem.utils.email;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.File;
+
+/**
+ * Доставка одного письма из outbox.
+ * smtp — настоящий сервер (SmtpEmailTransport), file — локальная заглушка (FileSinkEmailTransport):
+ * app.email.transport=file складывает .eml в каталог вместо отправки.
+ */
+public interface EmailTransport {
+
+    void send(OutboxEmail email) throws Exception;
+
+    /** Общая сборка MIME: HTML в UTF-8, вложение читается с диска при записи, не целиком в память. */
+    static void compose(MimeMessage message, OutboxEmail email, String from) throws MessagingException {
+        MimeMessageHelper helper = new MimeMessageHelper(message, email.getAttachmentPath() != null, "UTF-8");
+        helper.setFrom(from);
+        helper.setTo(email.getTo());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getHtml(), true);
+        if (email.getAttachmentPath() != null) {
+            helper.addAttachment(email.getAttachmentName(), new FileSystemResource(new File(email.getAttachmentPath())));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package az.eticksystem.utils.email;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Локальный «SMTP» для разработки и нагрузочных прогонов: письмо целиком (.eml, с вложением)
+ * пишется в app.email.sink-dir. Открывается любым почтовым клиентом; реальные адреса не получают ничего.
+ * Неудача для адреса с app.email.sink-fail-domain — проверка ретраев без настоящего сервера.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.email.transport", havingValue = "file")
+public class FileSinkEmailTransport implements EmailTransport {
+
+    private final Session session = Session.getInstance(new Properties());
+    private final Path    dir;
+    private final String  fromAddress;
+    private final String  failDomain;
+
+    public FileSinkEmailTransport(@Value("${app.email.sink-dir:data/mail-sink}") String dir,
+                                  @Value("${spring.mail.username}") String fromAddress,
+                                  @Value("${app.email.sink-fail-domain:}") String failDomain) {
+        this.dir         = Paths.get(dir);
+        this.fromAddress = fromAddress;
+        this.failDomain  = failDomain;
+        log.warn("Email transport = file: messages go to {}, nothing is sent", this.dir.toAbsolutePath());
+    }
+
+    @Override
+    public void send(OutboxEmail email) throws Exception {
+        if (!failDomain.isEmpty() && failDomain.equalsIgnoreCase(email.getDomain())) {
+            throw new IllegalStateException("Sink: simulated failure for " + email.getDomain());
+        }
+        MimeMessage message = new MimeMessage(session);
+        EmailTransport.compose(message, email, fromAddress);
+        message.saveChanges();
+
+        Files.createDirectories(dir);
+        try (OutputStream out = Files.newOutputStream(dir.resolve(email.getId() + ".eml"))) {
+            message.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package az.eticksystem.utils.email;
+
+import java.nio.file.Path;
+
+/**
+ * Вложение, которое готовится не при постановке письма, а перед отправкой
+ * (PDF билетов заказа рендерится сервером — TicketPdfStore).
+ * Файл принадлежит источнику: outbox только читает его и не удаляет.
+ */
+public interface OutboxAttachmentSource {
+
+    /** kind писем, для которых источник отдаёт вложение. */
+    String kind();
+
+    /**
+     * Файл вложения для письма без attachmentPath.
+     * Вложение, которого не будет никогда (заказ удалён), — MailPreparationException: письмо сразу FAILED.
+     */
+    Path attachment(OutboxEmail email) throws Exception;
+}
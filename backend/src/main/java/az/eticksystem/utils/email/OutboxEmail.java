@@ -0,0 +1,58 @@
+package az.eticksystem.utils.email;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Письмо в очереди отправки (email_outbox).
+ * Пишется до попытки отправки — рестарт или сбой SMTP письмо не теряют;
+ * по orderId видно, какие билеты так и не ушли (status = FAILED).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "email_outbox")
+// Выборка готовых к отправке: status + время следующей попытки
+@CompoundIndex(name = "status_nextAttemptAt", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class OutboxEmail {
+
+    @Id
+    private String id;
+
+    private String kind;            // TICKET, OTP, ...
+    private String to;
+    private String domain;          // домен получателя — лимит параллельных отправок на домен
+    private String subject;
+    private String html;
+    private String template;        // id шаблона (ticket.v1.az) — какой версией отрисовано письмо
+
+    private String attachmentName;
+    private String attachmentPath;  // файл на диске, не в документе
+
+    @Indexed(sparse = true)
+    private String orderId;
+
+    private Status        status;
+    private int           attempts;
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime lockedUntil;  // SENDING дольше этого — воркер умер, письмо забирается снова
+    private String        claimToken;   // выдаётся при каждом захвате; итог пишет только владелец текущего захвата
+    private String        lastError;
+
+    private LocalDateTime createdAt;
+
+    // Отправленные письма живут 30 дней для разбора, потом их удаляет Mongo
+    @Indexed(expireAfterSeconds = 30 * 24 * 3600)
+    private LocalDateTime sentAt;
+
+    public enum Status { PENDING, SENDING, SENT, FAILED }
+}
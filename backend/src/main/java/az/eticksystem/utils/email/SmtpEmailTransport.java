@@ -0,0 +1,143 @@
+package az.eticksystem.utils.email;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * SMTP с пулом прогретых соединений.
+ * JavaMailSender открывает новое соединение (TCP + STARTTLS + AUTH) на каждое письмо — сотни мс.
+ * Здесь соединение после письма возвращается в пул, и следующие письма того же воркера идут
+ * по той же сессии. Соединение, простоявшее дольше idle-seconds, перед использованием проверяется
+ * NOOP; разрыв посреди отправки — одна прозрачная попытка на новом соединении.
+ * После messages-per-connection писем соединение закрывается (лимиты почтовых серверов на сессию).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.email.transport", havingValue = "smtp", matchIfMissing = true)
+public class SmtpEmailTransport implements EmailTransport {
+
+    private final JavaMailSenderImpl mailSender;
+    private final String             fromAddress;
+    private final long               idleMillis;
+    private final int                maxMessages;
+
+    // LIFO: горячее соединение берётся первым, остывшие оседают внизу и закрываются evictIdle
+    private final LinkedBlockingDeque<Connection> idle;
+
+    public SmtpEmailTransport(JavaMailSenderImpl mailSender,
+                              @Value("${spring.mail.username}") String fromAddress,
+                              @Value("${app.email.smtp.pool-size:8}") int poolSize,
+                              @Value("${app.email.smtp.idle-seconds:60}") long idleSeconds,
+                              @Value("${app.email.smtp.messages-per-connection:100}") int maxMessages) {
+        this.mailSender  = mailSender;
+        this.fromAddress = fromAddress;
+        this.idleMillis  = idleSeconds * 1000;
+        this.maxMessages = maxMessages;
+        this.idle        = new LinkedBlockingDeque<>(poolSize);
+    }
+
+    @Override
+    public void send(OutboxEmail email) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        EmailTransport.compose(message, email, fromAddress);
+        message.saveChanges();
+
+        Connection connection = borrow();
+        try {
+            connection.transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            // Сервер отверг адрес — соединение живое, вернём его в пул
+            giveBack(connection);
+            throw e;
+        } catch (MessagingException e) {
+            // Сервер закрыл сессию (таймаут, лимит) — одна попытка на свежем соединении
+            close(connection);
+            log.debug("SMTP connection dropped, reconnecting: {}", e.getMessage());
+            connection = open();
+            try {
+                connection.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException retry) {
+                close(connection);
+                throw retry;
+            }
+        }
+        connection.sent++;
+        giveBack(connection);
+    }
+
+    // ── Pool ──────────────────────────────────────────────────────────────
+
+    private Connection borrow() throws MessagingException {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            // Недавно использованное соединение не проверяем — лишний NOOP на каждое письмо
+            if (System.currentTimeMillis() - connection.lastUsed < idleMillis / 2) return connection;
+            if (connection.transport.isConnected()) return connection;
+            close(connection);
+        }
+        return open();
+    }
+
+    private void giveBack(Connection connection) {
+        connection.lastUsed = System.currentTimeMillis();
+        if (connection.sent >= maxMessages || !idle.offerFirst(connection)) {
+            close(connection);
+        }
+    }
+
+    private Connection open() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(protocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return new Connection(transport);
+    }
+
+    private String protocol() {
+        return mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+    }
+
+    private static void close(Connection connection) {
+        try {
+            connection.transport.close();
+        } catch (MessagingException ignored) {
+            // соединение и так мёртвое
+        }
+    }
+
+    // Сервер всё равно оборвёт простаивающую сессию — закрываем сами, чтобы не ловить это на отправке
+    @Scheduled(fixedDelay = 30_000)
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        idle.removeIf(connection -> {
+            if (connection.lastUsed >= cutoff) return false;
+            close(connection);
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) close(connection);
+    }
+
+    private static final class Connection {
+        final Transport transport;
+        long            lastUsed = System.currentTimeMillis();
+        int             sent;
+
+        Connection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package az.eticksystem.event;
+
+import az.eticksystem.event.dto.SalesHistoryData;
+import az.eticksystem.order.Order;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Бенчмарк getGlobalStatistics на сгенерированных данных: организатор с EVENTS ивентами
+ * и EVENTS × ORDERS_PER_EVENT заказами. Сравниваются три пути чтения выручки и продаж по дням:
+ *  - старый: заказы каждого ивента отдельным запросом (N+1) и группировка в Java;
+ *  - одна агрегация по orders ($match по eventId/status, $group по дню);
+ *  - дневной свод sales_daily (текущий путь EventService).
+ * Итоги всех путей должны совпадать. Тяжёлый — запускается только явно:
+ *   mvn test -Dbenchmark=true -Dtest=GlobalStatisticsBenchmarkTest
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class GlobalStatisticsBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(GlobalStatisticsBenchmarkTest.class);
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static final String      ORGANIZER        = "bench@organizer.az";
+    private static final int         EVENTS           = 200;
+    private static final int         ORDERS_PER_EVENT = 500;
+    private static final int         WARMUP           = 2;
+    private static final int         RUNS             = 5;
+    private static final Set<String> SUCCESS_STATUSES = Set.of("SUCCESS", "Ödənilib");
+
+    private static final DateTimeFormatter CHART_FMT = DateTimeFormatter.ofPattern("dd/MM");
+
+    private static MongoClient        client;
+    private static MongoTemplate      mongoTemplate;
+    private static SalesRollupService salesRollupService;
+    private static List<String>       eventIds;
+
+    @BeforeAll
+    static void seed() {
+        client        = MongoClients.create(MONGO.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "global_stats_bench");
+        mongoTemplate.getDb().drop();
+        ensureIndexes(Order.class);
+        ensureIndexes(SalesDaily.class);
+
+        Random        random = new Random(42);
+        LocalDateTime start  = LocalDateTime.now().minusDays(400);
+        eventIds = new ArrayList<>(EVENTS);
+
+        for (int e = 0; e < EVENTS; e++) {
+            Event event = new Event();
+            event.setOrganizerId(ORGANIZER);
+            event.setLayoutVersion(1);
+            eventIds.add(mongoTemplate.insert(event).getId());
+
+            List<Order> orders = new ArrayList<>(ORDERS_PER_EVENT);
+            for (int o = 0; o < ORDERS_PER_EVENT; o++) {
+                LocalDateTime createdAt = start.plusMinutes(random.nextInt(400 * 24 * 60));
+                int           seats     = 1 + random.nextInt(4);
+                List<String>  seatIds   = new ArrayList<>(seats);
+                for (int s = 0; s < seats; s++) seatIds.add("GA_std_" + e + "_" + (o * 4 + s));
+
+                orders.add(Order.builder()
+                        .eventId(event.getId())
+                        .seatIds(seatIds)
+                        .totalAmount(seats * (10 + random.nextInt(90)) * 1.0)
+                        .status(random.nextInt(10) == 0 ? "PENDING" : "SUCCESS")
+                        .createdAt(createdAt)
+                        .build());
+            }
+            mongoTemplate.insert(orders, Order.class);
+        }
+
+        SalesCounterService salesCounterService = new SalesCounterService(mongoTemplate);
+        SeatClaimService seatClaimService = new SeatClaimService(mongoTemplate,
+                new EventStorageService(mock(EventRepository.class), mongoTemplate, salesCounterService),
+                salesCounterService,
+                new TierInventoryService(mongoTemplate));
+        salesRollupService = new SalesRollupService(mongoTemplate, seatClaimService, false);
+
+        long t0 = System.nanoTime();
+        salesRollupService.rebuild();
+        log.info("Seeded {} orders, sales_daily backfill took {} ms",
+                EVENTS * ORDERS_PER_EVENT, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void allPathsAgreeAndTimingsAreReported() {
+        Stats perEvent    = measure("per-event N+1", GlobalStatisticsBenchmarkTest::perEvent);
+        Stats aggregation = measure("aggregation",   GlobalStatisticsBenchmarkTest::aggregation);
+        Stats rollup      = measure("sales_daily",   GlobalStatisticsBenchmarkTest::rollup);
+
+        assertThat(aggregation.revenue).isCloseTo(perEvent.revenue, within(0.01));
+        assertThat(rollup.revenue).isCloseTo(perEvent.revenue, within(0.01));
+        assertThat(aggregation.tickets).isEqualTo(perEvent.tickets);
+        assertThat(rollup.tickets).isEqualTo(perEvent.tickets);
+    }
+
+    // ── Пути чтения ───────────────────────────────────────────────────────
+
+    /** Как было до агрегации: все заказы каждого ивента в JVM, фильтр и группировка в Java. */
+    private static Stats perEvent() {
+        double              revenue = 0;
+        Map<String, Double> history = new HashMap<>();
+        for (String eventId : eventIds) {
+            Query query = Query.query(Criteria.where("eventId").is(eventId))
+                    .with(Sort.by(Sort.Direction.DESC, "createdAt"));
+            for (Order o : mongoTemplate.find(query, Order.class)) {
+                if (!SUCCESS_STATUSES.contains(o.getStatus())) continue;
+                revenue += o.getTotalAmount();
+                if (o.getCreatedAt() != null) {
+                    history.merge(o.getCreatedAt().format(CHART_FMT), (double) o.getSeatIds().size(), Double::sum);
+                }
+            }
+        }
+        return new Stats(revenue, history.values().stream().mapToDouble(Double::doubleValue).sum());
+    }
+
+    /** Одна агрегация по orders с группировкой по дню (вариант до дневного свода). */
+    private static Stats aggregation() {
+        Aggregation salesByDay = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("eventId").in(eventIds).and("status").in(SUCCESS_STATUSES)),
+                Aggregation.project("totalAmount")
+                        .and(DateOperators.DateToString.dateOf("createdAt").toString("%d/%m")
+                                .withTimezone(DateOperators.Timezone.fromZone(ZoneId.systemDefault())))
+                        .as("day")
+                        .and(ConditionalOperators.when(ArrayOperators.IsArray.isArray("seatIds"))
+                                .then(ArrayOperators.Size.lengthOfArray("seatIds"))
+                                .otherwise(1))
+                        .as("seats"),
+                Aggregation.group("day").sum("totalAmount").as("revenue").sum("seats").as("seats"));
+
+        double revenue = 0;
+        double tickets = 0;
+        try (Stream<Document> days = mongoTemplate.aggregateStream(salesByDay, Order.class, Document.class)) {
+            for (Document day : (Iterable<Document>) days::iterator) {
+                revenue += ((Number) day.get("revenue")).doubleValue();
+                tickets += ((Number) day.get("seats")).doubleValue();
+            }
+        }
+        return new Stats(revenue, tickets);
+    }
+
+    /** Текущий путь EventService.getGlobalStatistics. */
+    private static Stats rollup() {
+        double revenue = salesRollupService.revenue(eventIds);
+        double tickets = salesRollupService.history(eventIds).stream().mapToDouble(SalesHistoryData::getAmount).sum();
+        return new Stats(revenue, tickets);
+    }
+
+    // ── Замер ─────────────────────────────────────────────────────────────
+
+    private record Stats(double revenue, double tickets) {}
+
+    private static Stats measure(String name, Supplier<Stats> path) {
+        for (int i = 0; i < WARMUP; i++) path.get();
+
+        long[] times  = new long[RUNS];
+        Stats  result = null;
+        for (int i = 0; i < RUNS; i++) {
+            long t0 = System.nanoTime();
+            result   = path.get();
+            times[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(times);
+        log.info("{}: median {} ms, min {} ms ({} runs)", name,
+                times[RUNS / 2] / 1_000_000, times[0] / 1_000_000, RUNS);
+        return result;
+    }
+
+    private static void ensureIndexes(Class<?> type) {
+        IndexOperations indexOps = mongoTemplate.indexOps(type);
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(type)
+                .forEach(indexOps::ensureIndex);
+    }
+}
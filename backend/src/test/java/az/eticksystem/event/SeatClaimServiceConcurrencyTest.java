@@ -0,0 +1,188 @@
+package az.eticksystem.event;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Условный захват мест на настоящем MongoDB: из N одновременных покупок одного места
+ * проходит ровно одна, остальные получают 409. Покупки пересекающихся наборов мест
+ * из разных 64-битных слов не занимают одно место дважды и не теряют биты.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SeatClaimServiceConcurrencyTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static final String EVENT_ID            = "concurrency-event";
+    private static final int    BUYERS              = 32;
+    private static final int    MAX_SEATS_PER_ORDER = 6;
+
+    private MongoClient      client;
+    private MongoTemplate    mongoTemplate;
+    private SeatGrid         grid;
+    private SeatClaimService seatClaimService;
+
+    @BeforeEach
+    void setUp() {
+        client        = MongoClients.create(MONGO.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "seat_claim_test");
+        mongoTemplate.getDb().drop();
+
+        List<Seat> seats = new ArrayList<>();
+        for (int row = 1; row <= 10; row++) {
+            for (int col = 1; col <= 20; col++) seats.add(new Seat(row, col, "vip"));
+        }
+        grid = SeatGrid.of(seats);
+
+        Event event = new Event();
+        event.setId(EVENT_ID);
+        event.setLayoutVersion(1);
+        mongoTemplate.save(event);
+        mongoTemplate.save(EventLayout.builder()
+                .id(EventLayout.idOf(EVENT_ID, 1))
+                .eventId(EVENT_ID)
+                .version(1)
+                .seats(seats)
+                .build());
+        mongoTemplate.save(EventInventory.builder()
+                .id(EVENT_ID)
+                .soldSeatWords(grid.emptyWords())
+                .adminSeatWords(grid.emptyWords())
+                .build());
+
+        SalesCounterService salesCounterService = new SalesCounterService(mongoTemplate);
+        seatClaimService = new SeatClaimService(mongoTemplate,
+                new EventStorageService(mock(EventRepository.class), mongoTemplate, salesCounterService),
+                salesCounterService,
+                new TierInventoryService(mongoTemplate));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void exactlyOneOfParallelClaimsOnSameSeatSucceeds() throws Exception {
+        List<String>  seatIds   = List.of("5_7");
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+        try {
+            List<Future<?>> buyers = new ArrayList<>();
+            for (int i = 0; i < BUYERS; i++) {
+                buyers.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        seatClaimService.claim(EVENT_ID, seatIds);
+                        succeeded.incrementAndGet();
+                    } catch (ResponseStatusException e) {
+                        if (e.getStatusCode() == HttpStatus.CONFLICT) conflicts.incrementAndGet();
+                        else throw e;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> buyer : buyers) buyer.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(succeeded).hasValue(1);
+        assertThat(conflicts).hasValue(BUYERS - 1);
+
+        // В базе занято ровно одно место
+        EventInventory inventory = mongoTemplate.findById(EVENT_ID, EventInventory.class);
+        long occupied = inventory.getSoldSeatWords().stream().mapToLong(Long::bitCount).sum();
+        assertThat(occupied).isEqualTo(1);
+    }
+
+    @Test
+    void overlappingMultiSeatClaimsNeverShareSeat() throws Exception {
+        // Наборы из случайных мест всего зала (200 мест = 4 слова) — пересекаются между покупателями
+        Random             random  = new Random(7);
+        List<List<String>> orders  = new ArrayList<>();
+        for (int i = 0; i < BUYERS * 4; i++) {
+            Set<String> seatIds = new LinkedHashSet<>();
+            int size = 1 + random.nextInt(MAX_SEATS_PER_ORDER);
+            while (seatIds.size() < size) seatIds.add((1 + random.nextInt(10)) + "_" + (1 + random.nextInt(20)));
+            orders.add(new ArrayList<>(seatIds));
+        }
+        assertThat(orders.stream().flatMap(List::stream).map(grid::indexOf).map(index -> index >>> 6).distinct())
+                .hasSizeGreaterThan(1);
+
+        Queue<List<String>> claimed   = new ConcurrentLinkedQueue<>();
+        AtomicInteger       conflicts = new AtomicInteger();
+        CountDownLatch      start     = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+        try {
+            List<Future<?>> buyers = new ArrayList<>();
+            for (List<String> seatIds : orders) {
+                buyers.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        seatClaimService.claim(EVENT_ID, seatIds);
+                        claimed.add(seatIds);
+                    } catch (ResponseStatusException e) {
+                        if (e.getStatusCode() == HttpStatus.CONFLICT) conflicts.incrementAndGet();
+                        else throw e;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> buyer : buyers) buyer.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(claimed.size() + conflicts.get()).isEqualTo(orders.size());
+        assertThat(conflicts).hasPositiveValue();
+
+        // Ни одно место не продано дважды
+        Set<String> sold  = new HashSet<>();
+        int         total = 0;
+        for (List<String> seatIds : claimed) {
+            for (String seatId : seatIds) assertThat(sold.add(seatId)).as("seat %s sold twice", seatId).isTrue();
+            total += seatIds.size();
+        }
+
+        // Биты в базе — ровно места успешных покупок
+        EventInventory inventory = mongoTemplate.findById(EVENT_ID, EventInventory.class);
+        long occupied = inventory.getSoldSeatWords().stream().mapToLong(Long::bitCount).sum();
+        assertThat(occupied).isEqualTo(total);
+        assertThat(grid.seatIds(inventory.getSoldSeatWords())).containsExactlyInAnyOrderElementsOf(sold);
+    }
+}
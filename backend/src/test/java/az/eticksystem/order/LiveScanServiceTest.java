@@ -0,0 +1,92 @@
+package az.eticksystem.order;
+
+import az.eticksystem.event.DashboardEvent;
+import az.eticksystem.event.Event;
+import az.eticksystem.event.EventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Live-индекс после снятия мест организатором: билеты освобождённых мест больше не проходят. */
+class LiveScanServiceTest {
+
+    private static final String EVENT_ID  = "live-event";
+    private static final String ORGANIZER = "org@eticket.az";
+
+    @TempDir
+    Path journalDir;
+
+    private LiveScanService liveScanService;
+
+    @BeforeEach
+    void setUp() {
+        Event event = new Event();
+        event.setId(EVENT_ID);
+        event.setOrganizerId(ORGANIZER);
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findById(EVENT_ID)).thenReturn(Optional.of(event));
+
+        Order order = Order.builder()
+                .eventId(EVENT_ID)
+                .tickets(List.of(ticket("1_1", "QR-A"), ticket("1_2", "QR-B")))
+                .build();
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.stream(any(Query.class), eq(Order.class))).thenAnswer(inv -> Stream.of(order));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Order.class))).thenReturn(mock(BulkOperations.class));
+
+        liveScanService = new LiveScanService(mongoTemplate, eventRepository, journalDir.toString(), false);
+        liveScanService.start(EVENT_ID, ORGANIZER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        liveScanService.stop(EVENT_ID, ORGANIZER);
+    }
+
+    @Test
+    void unbookedSeatIsNotAdmittedFromMemory() {
+        liveScanService.on(new DashboardEvent(DashboardEvent.Type.SEATS_UNBOOKED, EVENT_ID,
+                Map.of("seatIds", List.of("1_1"))));
+
+        // Снятый билет не находится в индексе — скан уходит на обычный путь через Mongo (там билета уже нет)
+        assertThat(liveScanService.scan("QR-A", "gate-1")).isNull();
+
+        LiveScanService.LiveScan kept = liveScanService.scan("QR-B", "gate-1");
+        assertThat(kept).isNotNull();
+        assertThat(kept.admitted()).isTrue();
+        assertThat(kept.seatId()).isEqualTo("1_2");
+    }
+
+    @Test
+    void unbookOfAnotherEventDoesNotTouchIndex() {
+        liveScanService.on(new DashboardEvent(DashboardEvent.Type.SEATS_UNBOOKED, "other-event",
+                Map.of("seatIds", List.of("1_1"))));
+
+        LiveScanService.LiveScan scan = liveScanService.scan("QR-A", "gate-1");
+        assertThat(scan).isNotNull();
+        assertThat(scan.admitted()).isTrue();
+    }
+
+    private static OrderTicket ticket(String seatId, String qrCode) {
+        OrderTicket ticket = new OrderTicket();
+        ticket.setSeatId(seatId);
+        ticket.setQrCode(qrCode);
+        return ticket;
+    }
+}
@@ -15,6 +15,7 @@ import {
   Tag, Check, ChevronDown, ExternalLink,
 } from "lucide-react"
 import { cn } from "@/lib/utils"
+import { decodeSeatBits } from "@/lib/seat-bits"
 import { TICKET_TEMPLATES } from "@/lib/ticket-templates"
 import { QRCodeSVG } from "qrcode.react"
 import { toPng } from "html-to-image"
@@ -217,7 +218,11 @@ interface PublicEvent {
   maxTicketsPerOrder?: number
   seats?: SeatItem[]
   tiers?: TierItem[]
-  soldSeats?: string[]
+  soldSeatBits?: string
+  tierRemaining?: Record<string, number>
+  seatGridMinRow?: number
+  seatGridMinCol?: number
+  seatGridCols?: number
   seatMapConfig?: { rowLabelType?: "letters" | "numbers"; stages?: unknown[] }
   ticketDesign?: TicketDesign
   buyerQuestions?: BuyerQuestion[]
@@ -286,7 +291,7 @@ function PublicSeatMap({ event, selectedSeats, onToggleSeat, bounds, rowLabels }
   const [offset,     setOffset]     = useState({ x: 0, y: 0 })
   const [isDragging, setIsDragging] = useState(false)
 
-  const soldSeats = event.soldSeats ?? []
+  const soldSeats = useMemo(() => new Set(decodeSeatBits(event.soldSeatBits, event)), [event])
 
   const selectedSeatsData: SeatDisplay[] = useMemo(() => selectedSeats.map((key) => {
     const [r, c] = key.split("_").map(Number)
@@ -353,7 +358,7 @@ function PublicSeatMap({ event, selectedSeats, onToggleSeat, bounds, rowLabels }
               )
               const seatKey  = `${seat.row}_${seat.col}`
               const isSelected = selectedSeats.includes(seatKey)
-              const isSold   = soldSeats.includes(seatKey)
+              const isSold   = soldSeats.has(seatKey)
 
               return (
                 <button
@@ -445,6 +450,10 @@ export default function PublicEventPage() {
   const [buyerInfo,      setBuyerInfo]      = useState({ firstName: "", lastName: "", email: "", phone: "" })
   const [customAnswers,  setCustomAnswers]  = useState<Record<string, string>>({})
   const [isProcessing,   setIsProcessing]   = useState(false)
+  const [holdId,         setHoldId]         = useState<string | null>(null)
+  const [holdSecret,     setHoldSecret]     = useState<string | null>(null)
+  // Ссылка на PDF, который сервер рендерит после заказа — повторное скачивание без перерисовки в браузере
+  const [ticketsUrl,     setTicketsUrl]     = useState<string | null>(null)
   const [ticketsToRender, setTicketsToRender] = useState<TicketGenData[]>([])
 
   const [toast, setToast] = useState<{ show: boolean; message: string; type: "error" | "success" }>({ show: false, message: "", type: "error" })
@@ -536,6 +545,11 @@ export default function PublicEventPage() {
     const total = Object.values(selectedTiers).reduce((a, b) => a + b, 0)
     const max   = event?.maxTicketsPerOrder ?? 10
     if (total >= max) { showToast(`Maksimum ${max} bilet seçə bilərsiniz.`); return }
+    const left = event?.tierRemaining?.[tierId]
+    if (left !== undefined && (selectedTiers[tierId] ?? 0) >= left) {
+      showToast(left > 0 ? `Bu bilet növündən yalnız ${left} bilet qalıb.` : "Bu bilet növü artıq satılıb.")
+      return
+    }
     setSelectedTiers((prev) => ({ ...prev, [tierId]: (prev[tierId] ?? 0) + 1 }))
   }
 
@@ -651,6 +665,42 @@ export default function PublicEventPage() {
     }
   }
 
+  // Бронируем выбранные места, пока покупатель заполняет данные
+  const releaseHold = () => {
+    if (!holdId) return
+    fetch(`${API_BASE}/api/v1/orders/hold/${holdId}`, {
+      method: "DELETE",
+      headers: holdSecret ? { "X-Hold-Secret": holdSecret } : undefined,
+    }).catch(() => {})
+    setHoldId(null)
+    setHoldSecret(null)
+  }
+
+  const goToDetails = async () => {
+    if (!event || !isReservedMap || selectedSeats.length === 0) { setCheckoutStep(2); return }
+    setIsProcessing(true)
+    try {
+      releaseHold()
+      const res = await fetch(`${API_BASE}/api/v1/orders/hold`, {
+        method: "POST",
+        headers: { "Content-Type": "application/json" },
+        body: JSON.stringify({ eventId: event.id, seatIds: selectedSeats }),
+      })
+      if (!res.ok) {
+        const errData = await res.json().catch(() => ({}))
+        throw new Error((errData as { message?: string }).message ?? "Oturacaqlar rezerv edilə bilmədi.")
+      }
+      const hold = await res.json()
+      setHoldId(hold.id)
+      setHoldSecret(hold.secret)
+      setCheckoutStep(2)
+    } catch (err) {
+      showToast((err as Error).message || "Xəta baş verdi.", "error")
+    } finally {
+      setIsProcessing(false)
+    }
+  }
+
   const handleCheckout = async () => {
     if (!event) return
     setIsProcessing(true)
@@ -694,6 +744,9 @@ export default function PublicEventPage() {
           seatIds:      finalSeatIds,
           totalAmount:  finalTotalPrice,
           promocodeId:  appliedPromo?.id ?? null,
+          holdId:       holdId,
+          holdSecret:   holdSecret,
+          locale:       locale,
         }),
       })
 
@@ -702,8 +755,13 @@ export default function PublicEventPage() {
         throw new Error((errData as { message?: string }).message ?? "Sifariş yaradılarkən xəta baş verdi.")
       }
 
+      setHoldId(null)
+      setHoldSecret(null)
       const createdOrder = await orderRes.json()
       const backendTickets = (createdOrder.tickets ?? []) as { seatId: string; qrCode: string }[]
+      if (createdOrder.id && backendTickets[0]?.qrCode) {
+        setTicketsUrl(`${API_BASE}/api/v1/tickets/orders/${createdOrder.id}/pdf?ticket=${encodeURIComponent(backendTickets[0].qrCode)}`)
+      }
 
       const prepared: TicketGenData[] = ticketsToGenerate.map((tData) => {
         const matched = backendTickets.find((bt) => bt.seatId === tData.seatKey)
@@ -731,17 +789,6 @@ export default function PublicEventPage() {
 
       pdf.save(`${event.title.replace(/\s+/g, "_")}_Biletler.pdf`)
 
-      const pdfBlob   = pdf.output("blob")
-      const emailForm = new FormData()
-      emailForm.append("file",      pdfBlob, "ticket.pdf")
-      emailForm.append("email",     buyerInfo.email)
-      emailForm.append("buyerName", buyerInfo.firstName)
-      emailForm.append("eventName", event.title)
-      emailForm.append("eventDate", `${event.eventDate ?? ""} ${event.startTime ?? ""}`)
-      emailForm.append("location",  event.isPhysical ? (event.venueName ?? "") : "Online Event")
-
-      fetch(`${API_BASE}/api/v1/email/send-ticket`, { method: "POST", body: emailForm }).catch(() => {})
-
       setCheckoutStep(3)
     } catch (err) {
       showToast((err as Error).message || "Xəta baş verdi.", "error")
@@ -751,6 +798,7 @@ export default function PublicEventPage() {
   }
 
   const closeCheckout = () => {
+    if (checkoutStep !== 3) releaseHold()
     setIsCheckoutOpen(false)
     if (checkoutStep === 3) window.location.reload()
   }
@@ -975,6 +1023,7 @@ export default function PublicEventPage() {
                   <div className="flex flex-col gap-4 max-w-lg mx-auto w-full">
                     {event.tiers?.map((tier) => {
                       const tierId = tier._safeId ?? String(tier.id)
+                      const left   = event.tierRemaining?.[tierId]
                       return (
                         <div key={tierId} className="flex items-center justify-between p-5 bg-card border border-border/60 rounded-2xl shadow-sm hover:border-primary/40 transition-colors">
                           <div className="flex flex-col gap-1">
@@ -983,11 +1032,14 @@ export default function PublicEventPage() {
                               <h3 className="font-bold text-lg text-foreground">{tier.name}</h3>
                             </div>
                             <span className="text-primary font-black text-xl">{tier.price === 0 ? (t(locale as any, "free") || "Free") : `${tier.price} ₼`}</span>
+                            {left !== undefined && left <= 10 && (
+                              <span className="text-xs font-semibold text-destructive">{left > 0 ? `Son ${left} bilet` : "Satılıb"}</span>
+                            )}
                           </div>
                           <div className="flex items-center gap-4 bg-secondary/20 p-2 rounded-xl border border-border/50">
                             <Button variant="outline" size="icon" className="h-8 w-8 rounded-lg" onClick={() => handleDecrementTier(tierId)} disabled={!selectedTiers[tierId]}><Minus className="w-4 h-4" /></Button>
                             <span className="font-bold w-6 text-center text-lg">{selectedTiers[tierId] ?? 0}</span>
-                            <Button variant="outline" size="icon" className="h-8 w-8 rounded-lg" onClick={() => handleIncrementTier(tierId)}><Plus className="w-4 h-4" /></Button>
+                            <Button variant="outline" size="icon" className="h-8 w-8 rounded-lg" onClick={() => handleIncrementTier(tierId)} disabled={left !== undefined && (selectedTiers[tierId] ?? 0) >= left}><Plus className="w-4 h-4" /></Button>
                           </div>
                         </div>
                       )
@@ -1063,6 +1115,11 @@ export default function PublicEventPage() {
                   <CheckCircle2 className="w-16 h-16 text-green-500 mb-4" />
                   <h3 className="text-2xl font-black mb-2 uppercase tracking-tight">{t(locale as any, "paymentSuccessful") || "ÖDƏNİŞ UĞURLUDUR!"}</h3>
                   <p className="text-muted-foreground text-sm max-w-xs">{t(locale as any, "ticketsDownloaded") || "Biletləriniz PDF formatında yükləndi!"}</p>
+                  {ticketsUrl && (
+                    <a href={ticketsUrl} className="mt-4 text-sm font-bold text-primary underline-offset-4 hover:underline">
+                      {t(locale as any, "downloadTicketsAgain") || "Biletləri yenidən yüklə"}
+                    </a>
+                  )}
                   <Button size="lg" className="mt-8 px-10 rounded-xl font-bold" onClick={closeCheckout}>{t(locale as any, "done")}</Button>
                 </div>
               )}
@@ -1082,14 +1139,14 @@ export default function PublicEventPage() {
                 </div>
                 <div className="flex gap-3 w-full sm:w-auto">
                   {checkoutStep === 2 && (
-                    <Button variant="outline" size="lg" className="h-14 px-8 rounded-xl font-bold" onClick={() => setCheckoutStep(1)}>
+                    <Button variant="outline" size="lg" className="h-14 px-8 rounded-xl font-bold" onClick={() => { releaseHold(); setCheckoutStep(1) }}>
                       {t(locale as any, "back") || "Geri"}
                     </Button>
                   )}
                   <Button
                     size="lg"
                     className={cn("h-14 px-10 rounded-xl font-black text-lg flex-1 sm:flex-none shadow-xl", checkoutStep === 2 ? "bg-green-600 hover:bg-green-700" : "")}
-                    onClick={() => checkoutStep === 1 ? setCheckoutStep(2) : handleCheckout()}
+                    onClick={() => checkoutStep === 1 ? goToDetails() : handleCheckout()}
                     disabled={checkoutStep === 1 ? totalCount === 0 : (!isFormValid || isProcessing)}
                   >
                     {isProcessing
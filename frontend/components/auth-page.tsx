@@ -449,7 +449,7 @@ export function AuthPage() {
     }
     withLoading(async () => {
       const fullPhone = `${selectedCountry.code}${phone.replace(/\s+/g, "")}`
-      await apiCall("/api/v1/auth/request-otp", { fullName, email, phone: fullPhone, password, type: "REGISTER" })
+      await apiCall("/api/v1/auth/request-otp", { fullName, email, phone: fullPhone, password, type: "REGISTER", locale })
       setCountdown(OTP_RESEND_DELAY)
       setMode("verify")
     })
@@ -466,7 +466,7 @@ export function AuthPage() {
   const handleForgotRequest = (e: React.FormEvent) => {
     e.preventDefault()
     withLoading(async () => {
-      await apiCall("/api/v1/auth/request-otp", { email, type: "RESET" })
+      await apiCall("/api/v1/auth/request-otp", { email, type: "RESET", locale })
       setCountdown(OTP_RESEND_DELAY)
       setMode("verify-reset")
     })
@@ -496,8 +496,8 @@ export function AuthPage() {
   const handleResendOtp = () => {
     const isRegister = mode === "verify"
     const body = isRegister
-      ? { fullName, email, phone: `${selectedCountry.code}${phone.replace(/\s+/g, "")}`, password, type: "REGISTER" }
-      : { email, type: "RESET" }
+      ? { fullName, email, phone: `${selectedCountry.code}${phone.replace(/\s+/g, "")}`, password, type: "REGISTER", locale }
+      : { email, type: "RESET", locale }
     withLoading(async () => {
       await apiCall("/api/v1/auth/request-otp", body)
       setCountdown(OTP_RESEND_DELAY)
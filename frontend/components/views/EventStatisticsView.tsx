@@ -14,6 +14,7 @@ import {
   Loader2, Info, Tag, ChevronDown, ChevronUp, AlertCircle, RefreshCw,
 } from "lucide-react"
 import { cn } from "@/lib/utils"
+import { subscribeStream, type StreamData } from "@/lib/live-stream"
 import type { EventData } from "./AdminBookingModal"
 
 const API_BASE  = process.env.NEXT_PUBLIC_API_URL ?? "http://localhost:8080"
@@ -30,6 +31,7 @@ interface Stats {
   revenue: number; sold: number; total: number
   views: number; conversionRate: number
   recentOrders: Order[]; salesHistory: SalesDay[]
+  recentOrdersCursor?: string | null
 }
 interface EventStatisticsViewProps {
   event: EventData
@@ -37,6 +39,11 @@ interface EventStatisticsViewProps {
   onNavigateToOrders?: () => void
 }
 
+type ReportFormat = "pdf" | "csv" | "xlsx"
+const REPORT_FORMATS: ReportFormat[] = ["pdf", "csv", "xlsx"]
+const REPORT_POLL_MS = 1000
+interface ReportJob { jobId: string; status: "QUEUED" | "RUNNING" | "DONE" | "FAILED"; progress: number }
+
 // ── Error helper ──────────────────────────────────────────────────────────────
 function getErrKey(err: unknown, res?: Response): string {
   if (typeof navigator !== "undefined" && !navigator.onLine) return "errNoInternet"
@@ -106,15 +113,53 @@ function BarChart({ data }: { data: { day: string; val: number }[] }) {
   )
 }
 
+// ── Live deltas ───────────────────────────────────────────────────────────────
+function formatOrderDate(d: Date): string {
+  const p = (n: number) => String(n).padStart(2, "0")
+  return `${p(d.getDate())}.${p(d.getMonth() + 1)}.${d.getFullYear()}, ${p(d.getHours())}:${p(d.getMinutes())}`
+}
+
+function withConversion(s: Stats): Stats {
+  const rate = s.views > 0 ? Math.round((s.sold / s.views) * 1000) / 10 : 0
+  return { ...s, conversionRate: rate }
+}
+
+function applyDelta(s: Stats, type: string, data: StreamData): Stats {
+  switch (type) {
+    case "ORDER_CREATED": {
+      const tickets = Number(data.tickets ?? 0)
+      const amount  = Number(data.amount ?? 0)
+      const id      = String(data.orderId ?? "")
+      const order: Order = {
+        id: id.slice(-6).toUpperCase(), customer: String(data.customer ?? ""), email: String(data.email ?? ""),
+        type: tickets, amount, date: formatOrderDate(new Date()),
+      }
+      return withConversion({ ...s, sold: s.sold + tickets, revenue: s.revenue + amount, recentOrders: [order, ...s.recentOrders] })
+    }
+    case "SEATS_BOOKED":
+      return withConversion({ ...s, sold: s.sold + Number(data.tickets ?? 0) })
+    case "SEATS_UNBOOKED":
+      return withConversion({ ...s, sold: Math.max(0, s.sold - ((data.seatIds as unknown[] | undefined)?.length ?? 0)) })
+    case "VIEW":
+      return withConversion({ ...s, views: s.views + 1 })
+    default:
+      return s
+  }
+}
+
 // ── Main ──────────────────────────────────────────────────────────────────────
 export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps) {
   const { locale }                                    = useLocale()
   const [stats, setStats]                             = useState<Stats | null>(null)
   const [isLoading, setIsLoading]                     = useState(true)
   const [errorKey, setErrorKey]                       = useState<string | null>(null)
-  const [isDownloading, setIsDownloading]             = useState(false)
+  const [isDownloading, setIsDownloading]             = useState<ReportFormat | null>(null)
   const [downloadErrKey, setDownloadErrKey]           = useState<string | null>(null)
+  const [downloadProgress, setDownloadProgress]       = useState<number | null>(null)
   const [isOrdersExpanded, setIsOrdersExpanded]       = useState(false)
+  const [olderOrders, setOlderOrders]                 = useState<Order[]>([])
+  const [olderCursor, setOlderCursor]                 = useState<string | null>(null)
+  const [isLoadingOlder, setIsLoadingOlder]           = useState(false)
 
   const fetchStats = () => {
     const controller = new AbortController()
@@ -129,7 +174,10 @@ export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps)
           signal: controller.signal,
         })
         if (!res.ok) { setErrorKey(getErrKey(null, res)); return }
-        setStats(await res.json())
+        const data: Stats = await res.json()
+        setStats(data)
+        setOlderOrders([])
+        setOlderCursor(data.recentOrdersCursor ?? null)
       } catch (err) {
         if ((err as Error).name !== "AbortError") setErrorKey(getErrKey(err))
       } finally {
@@ -141,27 +189,70 @@ export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps)
 
   useEffect(() => { fetchStats() }, [event.id])
 
-  const handleDownloadPdf = async () => {
-    setIsDownloading(true)
+  // Старые заказы — страницами по курсору, сервер отдаёт в /statistics только последние
+  const loadOlderOrders = async () => {
+    if (!olderCursor || isLoadingOlder) return
+    setIsLoadingOlder(true)
+    try {
+      const token = localStorage.getItem(TOKEN_KEY)
+      const res = await fetch(
+        `${API_BASE}/api/v1/events/${event.id}/orders?cursor=${encodeURIComponent(olderCursor)}`,
+        { headers: { Authorization: `Bearer ${token}` } },
+      )
+      if (!res.ok) return
+      const page: { items: Order[]; nextCursor: string | null } = await res.json()
+      setOlderOrders((prev) => [...prev, ...page.items])
+      setOlderCursor(page.nextCursor)
+    } finally {
+      setIsLoadingOlder(false)
+    }
+  }
+
+  // Живые дельты вместо повторного опроса /statistics
+  useEffect(() => subscribeStream(
+    `/api/v1/events/${event.id}/stream`,
+    (type, data) => setStats((prev) => (prev ? applyDelta(prev, type, data) : prev)),
+    () => { fetchStats() },
+  ), [event.id])
+
+  // PDF — отчёт; CSV/XLSX — все заказы ивента
+  const handleDownload = async (format: ReportFormat) => {
+    setIsDownloading(format)
     setDownloadErrKey(null)
     try {
       const token = localStorage.getItem(TOKEN_KEY)
       if (!token) { setDownloadErrKey("errUnauthorized"); return }
-      const res = await fetch(`${API_BASE}/api/v1/events/${event.id}/report/pdf`, {
-        headers: { Authorization: `Bearer ${token}` },
-      })
+      const headers = { Authorization: `Bearer ${token}` }
+      const base    = `${API_BASE}/api/v1/events/${event.id}/reports`
+
+      // Отчёт строится в фоне: ставим задачу и ждём готовности (или сразу берём из кэша)
+      let jobRes = await fetch(`${base}?format=${format}`, { method: "POST", headers })
+      if (!jobRes.ok) { setDownloadErrKey(getErrKey(null, jobRes)); return }
+      let job: ReportJob = await jobRes.json()
+      while (job.status === "QUEUED" || job.status === "RUNNING") {
+        setDownloadProgress(job.progress)
+        await new Promise((resolve) => setTimeout(resolve, REPORT_POLL_MS))
+        jobRes = await fetch(`${base}/${job.jobId}`, { headers })
+        if (!jobRes.ok) { setDownloadErrKey(getErrKey(null, jobRes)); return }
+        job = await jobRes.json()
+      }
+      if (job.status === "FAILED") { setDownloadErrKey("errServer"); return }
+
+      const res = await fetch(`${base}/${job.jobId}/download`, { headers })
       if (!res.ok) { setDownloadErrKey(getErrKey(null, res)); return }
       const blob = await res.blob()
       const url  = URL.createObjectURL(blob)
       const a    = Object.assign(document.createElement("a"), {
-        href: url, download: `Hesabat_${(event.name ?? event.title ?? "event").replace(/\s+/g, "_")}.pdf`,
+        href: url,
+        download: `${format === "pdf" ? "Hesabat" : "Sifarisler"}_${(event.name ?? event.title ?? "event").replace(/\s+/g, "_")}.${format}`,
       })
       document.body.appendChild(a); a.click(); a.remove()
       URL.revokeObjectURL(url)
     } catch (err) {
       setDownloadErrKey(getErrKey(err))
     } finally {
-      setIsDownloading(false)
+      setIsDownloading(null)
+      setDownloadProgress(null)
     }
   }
 
@@ -193,16 +284,18 @@ export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps)
 
   if (!stats) return null
 
-  // Chart data (last 7 days)
+  // Chart data (last 7 days). Дни свода продаж — yyyy-MM-dd в UTC, поэтому и диапазон строится в UTC:
+  // локальная полночь в UTC+4 — это ещё вчерашний день, и ключи съехали бы на сутки
+  const now       = new Date()
   const chartData = Array.from({ length: 7 }).map((_, i) => {
-    const d   = new Date(); d.setDate(d.getDate() - (6 - i))
-    const key = `${String(d.getDate()).padStart(2, "0")}/${String(d.getMonth() + 1).padStart(2, "0")}`
+    const d    = new Date(Date.UTC(now.getUTCFullYear(), now.getUTCMonth(), now.getUTCDate() - (6 - i)))
+    const key  = d.toISOString().slice(0, 10)
     const hist = stats.salesHistory?.find((s) => s.date === key)
-    return { day: AZ_DAYS[d.getDay()], val: hist?.amount ?? 0 }
+    return { day: AZ_DAYS[d.getUTCDay()], val: hist?.amount ?? 0 }
   })
 
   const fillPct = stats.total > 0 ? Math.round((stats.sold / stats.total) * 100) : 0
-  const orders  = stats.recentOrders ?? []
+  const orders  = [...(stats.recentOrders ?? []), ...olderOrders]
   const shown   = isOrdersExpanded ? orders : orders.slice(0, 5)
 
   const kpis = [
@@ -227,16 +320,23 @@ export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps)
           </div>
         </div>
         <div className="flex flex-col items-end gap-1">
-          <Button
-            variant="outline"
-            className="gap-2 font-bold rounded-xl shrink-0"
-            onClick={handleDownloadPdf}
-            disabled={isDownloading}
-          >
-            {isDownloading ? <Loader2 className="h-4 w-4 animate-spin" /> : <Download className="h-4 w-4" />}
-            <span className="hidden sm:inline">{isDownloading ? (t(locale, "uploading") || "Yüklənir...") : "PDF"}</span>
-          </Button>
-          {/* PDF download error — inline under button */}
+          <div className="flex gap-2">
+            {REPORT_FORMATS.map((format) => (
+              <Button
+                key={format}
+                variant="outline"
+                className="gap-2 font-bold rounded-xl shrink-0"
+                onClick={() => handleDownload(format)}
+                disabled={isDownloading !== null}
+              >
+                {isDownloading === format ? <Loader2 className="h-4 w-4 animate-spin" /> : <Download className="h-4 w-4" />}
+                <span className="hidden sm:inline">
+                  {format.toUpperCase()}{isDownloading === format && downloadProgress !== null ? ` ${downloadProgress}%` : ""}
+                </span>
+              </Button>
+            ))}
+          </div>
+          {/* Download error — inline under buttons */}
           {downloadErrKey && (
             <p className="text-[10px] text-destructive font-semibold max-w-[160px] text-right">
               {t(locale, downloadErrKey)}
@@ -289,7 +389,7 @@ export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps)
       <Card className="border-border/50 bg-card shadow-sm overflow-hidden" style={{ isolation: "isolate" }}>
         <CardHeader className="flex flex-row items-center justify-between border-b border-border/50 py-4 px-5">
           <CardTitle className="text-sm font-bold">{t(locale, "recentOrders") || "Son Sifarişlər"}</CardTitle>
-          {orders.length > 5 && (
+          {(orders.length > 5 || olderCursor) && (
             <button
               onClick={() => setIsOrdersExpanded(!isOrdersExpanded)}
               className="flex items-center gap-1 text-xs font-bold text-primary hover:text-primary/80 transition-colors"
@@ -367,6 +467,14 @@ export function EventStatisticsView({ event, onBack }: EventStatisticsViewProps)
             </TableBody>
           </Table>
         </div>
+        {isOrdersExpanded && olderCursor && (
+          <div className="flex justify-center border-t border-border/50 py-3">
+            <Button variant="ghost" size="sm" className="gap-2 rounded-xl text-xs font-bold" disabled={isLoadingOlder} onClick={loadOlderOrders}>
+              {isLoadingOlder ? <Loader2 className="h-3.5 w-3.5 animate-spin" /> : <ChevronDown className="h-3.5 w-3.5" />}
+              {t(locale, "loadMore") || "Daha çox"}
+            </Button>
+          </div>
+        )}
       </Card>
     </div>
   )
@@ -7,6 +7,7 @@ import { Card, CardContent, CardHeader, CardTitle } from "@/components/ui/card"
 import { DollarSign, Ticket, Eye, CalendarDays, TrendingUp, Loader2, ArrowUpRight, AlertCircle, RefreshCw } from "lucide-react"
 import { XAxis, YAxis, CartesianGrid, Tooltip, ResponsiveContainer, Area, AreaChart } from "recharts"
 import { cn } from "@/lib/utils"
+import { subscribeStream, type StreamData } from "@/lib/live-stream"
 
 const API_BASE = process.env.NEXT_PUBLIC_API_URL ?? "http://localhost:8080"
 
@@ -41,6 +42,27 @@ function getErrKey(err: unknown, res?: Response): string {
   return "errUnknown"
 }
 
+// yyyy-MM-dd → dd/MM
+function formatDay(day: string): string {
+  const [, m, d] = day.split("-")
+  return d && m ? `${d}/${m}` : day
+}
+
+function applyDelta(s: GlobalStats, type: string, data: StreamData): GlobalStats {
+  switch (type) {
+    case "ORDER_CREATED":
+      return { ...s, totalSold: s.totalSold + Number(data.tickets ?? 0), totalRevenue: s.totalRevenue + Number(data.amount ?? 0) }
+    case "SEATS_BOOKED":
+      return { ...s, totalSold: s.totalSold + Number(data.tickets ?? 0) }
+    case "SEATS_UNBOOKED":
+      return { ...s, totalSold: Math.max(0, s.totalSold - ((data.seatIds as unknown[] | undefined)?.length ?? 0)) }
+    case "VIEW":
+      return { ...s, totalViews: s.totalViews + 1 }
+    default:
+      return s
+  }
+}
+
 export function DashboardView() {
   const { locale }                = useLocale()
   const [data, setData]           = useState<GlobalStats | null>(null)
@@ -70,6 +92,13 @@ export function DashboardView() {
 
   useEffect(() => { fetchStats() }, [])
 
+  // Живые дельты по всем ивентам организатора вместо опроса /stats/global
+  useEffect(() => subscribeStream(
+    "/api/v1/events/stats/stream",
+    (type, delta) => setData((prev) => (prev ? applyDelta(prev, type, delta) : prev)),
+    () => { fetchStats() },
+  ), [])
+
   if (isLoading) return (
     <div className="flex h-[400px] items-center justify-center" role="status">
       <Loader2 className="h-8 w-8 animate-spin text-primary" />
@@ -152,6 +181,7 @@ export function DashboardView() {
                 <CartesianGrid strokeDasharray="3 3" vertical={false} className="stroke-border/50" />
                 <XAxis
                   dataKey="date"
+                  tickFormatter={formatDay}
                   tick={{ fontSize: 10, fontWeight: 700 }}
                   className="fill-muted-foreground"
                   axisLine={false} tickLine={false}
@@ -172,6 +202,7 @@ export function DashboardView() {
                     boxShadow: "0 8px 32px rgba(0,0,0,0.15)",
                   }}
                   cursor={{ stroke: "hsl(var(--primary) / 0.2)", strokeWidth: 1 }}
+                  labelFormatter={(label) => formatDay(String(label))}
                 />
                 <Area
                   type="monotone"
@@ -10,6 +10,7 @@ import {
   Loader2, Link2, Check, UserPlus, Ticket, AlertCircle, RefreshCw,
 } from "lucide-react"
 import { cn } from "@/lib/utils"
+import { decodeSeatBits, type SeatGridInfo } from "@/lib/seat-bits"
 import { AdminBookingModal } from "./AdminBookingModal"
 export type { EventData } from "./AdminBookingModal"
 import type { EventData } from "./AdminBookingModal"
@@ -279,8 +280,8 @@ export function EventsView({ onCreateEvent, onEditEvent, onManageEvent }: Events
           isPhysical:        Boolean(ev.isPhysical),
           isReservedSeating: Boolean(ev.isReservedSeating),
           seats:             (ev.seats ?? []) as EventData["seats"],
-          soldSeats:         (ev.soldSeats as string[]) ?? [],
-          adminSeats:        (ev.adminSeats as string[]) ?? [],
+          soldSeats:         decodeSeatBits(ev.soldSeatBits as string | undefined, ev as SeatGridInfo),
+          adminSeats:        decodeSeatBits(ev.adminSeatBits as string | undefined, ev as SeatGridInfo),
           seatMapConfig:     ev.seatMapConfig as EventData["seatMapConfig"],
           ticketDesign:      ev.ticketDesign as EventData["ticketDesign"],
           title:             String(ev.title ?? ""),
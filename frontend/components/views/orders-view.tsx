@@ -1,6 +1,6 @@
 "use client"
 
-import { useState, useEffect, useMemo } from "react"
+import { useState, useEffect, useRef, useCallback } from "react"
 import { useLocale } from "@/lib/locale-context"
 import { t } from "@/lib/i18n"
 import { Input } from "@/components/ui/input"
@@ -13,6 +13,7 @@ import { cn } from "@/lib/utils"
 
 const API_BASE  = process.env.NEXT_PUBLIC_API_URL ?? "http://localhost:8080"
 const TOKEN_KEY = "eticksystem_token"
+const PAGE_SIZE = 50
 
 type FilterType = "all" | "paid" | "invite"
 
@@ -21,6 +22,7 @@ interface Order {
   email: string; type: number; isInvite: boolean
   amount: number; date: string
 }
+interface OrderPage { items: Order[]; nextCursor: string | null }
 
 function getErrKey(err: unknown, res?: Response): string {
   if (typeof navigator !== "undefined" && !navigator.onLine) return "errNoInternet"
@@ -34,10 +36,14 @@ function getErrKey(err: unknown, res?: Response): string {
 export function OrdersView() {
   const { locale }               = useLocale()
   const [orders, setOrders]      = useState<Order[]>([])
+  const [cursor, setCursor]      = useState<string | null>(null)
   const [loading, setLoading]    = useState(true)
+  const [loadingMore, setLoadingMore] = useState(false)
   const [errorKey, setErrorKey]  = useState<string | null>(null)
   const [search, setSearch]      = useState("")
+  const [query, setQuery]        = useState("")
   const [filter, setFilter]      = useState<FilterType>("all")
+  const sentinelRef              = useRef<HTMLDivElement | null>(null)
 
   const FILTERS: { key: FilterType; label: string }[] = [
     { key: "all",    label: t(locale, "all")    || "Bütün"        },
@@ -45,20 +51,30 @@ export function OrdersView() {
     { key: "invite", label: t(locale, "invite") || "Dəvətnamələr" },
   ]
 
+  // Фильтры и поиск выполняет сервер; список подгружается страницами по курсору
+  const fetchPage = async (after: string | null, signal?: AbortSignal): Promise<OrderPage | null> => {
+    const token = localStorage.getItem(TOKEN_KEY)
+    if (!token) { setErrorKey("errUnauthorized"); return null }
+    const params = new URLSearchParams({ limit: String(PAGE_SIZE) })
+    if (filter !== "all") params.set("kind", filter)
+    if (query)            params.set("q", query)
+    if (after)            params.set("cursor", after)
+    const res = await fetch(`${API_BASE}/api/v1/orders/organizer?${params}`, {
+      headers: { Authorization: `Bearer ${token}` },
+      signal,
+    })
+    if (!res.ok) { setErrorKey(getErrKey(null, res)); return null }
+    return res.json()
+  }
+
   const fetchOrders = () => {
     const controller = new AbortController()
     setLoading(true)
     setErrorKey(null)
     ;(async () => {
       try {
-        const token = localStorage.getItem(TOKEN_KEY)
-        if (!token) { setErrorKey("errUnauthorized"); setLoading(false); return }
-        const res = await fetch(`${API_BASE}/api/v1/orders/organizer-all`, {
-          headers: { Authorization: `Bearer ${token}` },
-          signal: controller.signal,
-        })
-        if (!res.ok) { setErrorKey(getErrKey(null, res)); return }
-        setOrders(await res.json())
+        const page = await fetchPage(null, controller.signal)
+        if (page) { setOrders(page.items); setCursor(page.nextCursor) }
       } catch (err) {
         if ((err as Error).name !== "AbortError") setErrorKey(getErrKey(err))
       } finally { setLoading(false) }
@@ -66,18 +82,37 @@ export function OrdersView() {
     return () => controller.abort()
   }
 
-  useEffect(() => { fetchOrders() }, [])
-
-  const filteredOrders = useMemo(() => {
-    const q = search.toLowerCase()
-    return orders.filter((o) => {
-      const matchSearch = o.customer.toLowerCase().includes(q) || o.email.toLowerCase().includes(q) || o.id.toLowerCase().includes(q)
-      const matchFilter = filter === "all" ? true : filter === "invite" ? o.isInvite : !o.isInvite
-      return matchSearch && matchFilter
-    })
-  }, [search, filter, orders])
-
-  if (loading) return (
+  const loadMore = useCallback(async () => {
+    if (!cursor || loadingMore) return
+    setLoadingMore(true)
+    try {
+      const page = await fetchPage(cursor)
+      if (page) { setOrders((prev) => [...prev, ...page.items]); setCursor(page.nextCursor) }
+    } catch (err) {
+      setErrorKey(getErrKey(err))
+    } finally { setLoadingMore(false) }
+  }, [cursor, loadingMore, filter, query])
+
+  // Поиск уходит на сервер после паузы в наборе
+  useEffect(() => {
+    const id = setTimeout(() => setQuery(search.trim()), 300)
+    return () => clearTimeout(id)
+  }, [search])
+
+  useEffect(() => fetchOrders(), [filter, query])
+
+  // Следующая страница — когда низ таблицы появляется в зоне видимости
+  useEffect(() => {
+    const el = sentinelRef.current
+    if (!el || !cursor) return
+    const observer = new IntersectionObserver((entries) => {
+      if (entries[0].isIntersecting) loadMore()
+    }, { rootMargin: "400px" })
+    observer.observe(el)
+    return () => observer.disconnect()
+  }, [cursor, loadMore])
+
+  if (loading && orders.length === 0) return (
     <div className="flex h-[60vh] items-center justify-center" role="status">
       <Loader2 className="h-7 w-7 animate-spin text-primary" />
     </div>
@@ -132,7 +167,7 @@ export function OrdersView() {
         <CardHeader className="pb-3 border-b border-border/40">
           <div>
             <p className="text-[10px] font-bold uppercase tracking-[0.14em] text-muted-foreground mb-1">{t(locale, "orders") || "Sifarişlər"}</p>
-            <CardTitle className="text-lg font-black text-foreground">{filteredOrders.length} {t(locale, "results") || "nəticə"}</CardTitle>
+            <CardTitle className="text-lg font-black text-foreground">{orders.length}{cursor ? "+" : ""} {t(locale, "results") || "nəticə"}</CardTitle>
           </div>
         </CardHeader>
         <CardContent className="p-0">
@@ -154,14 +189,14 @@ export function OrdersView() {
               </TableRow>
             </TableHeader>
             <TableBody>
-              {filteredOrders.length === 0 ? (
+              {orders.length === 0 ? (
                 <TableRow>
                   <TableCell colSpan={6} className="text-center py-20 text-muted-foreground/40 font-bold">
                     {t(locale, "noResults") || "Məlumat tapılmadı"}
                   </TableCell>
                 </TableRow>
               ) : (
-                filteredOrders.map((o) => (
+                orders.map((o) => (
                   <TableRow key={o.id} className="hover:bg-muted/30 transition-colors border-border/30">
                     <TableCell>
                       <span className="font-mono text-xs font-black text-primary">#{o.id}</span>
@@ -200,6 +235,9 @@ export function OrdersView() {
               )}
             </TableBody>
           </Table>
+          <div ref={sentinelRef} className="flex justify-center py-3">
+            {loadingMore && <Loader2 className="h-5 w-5 animate-spin text-primary" />}
+          </div>
         </CardContent>
       </Card>
 
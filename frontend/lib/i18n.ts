@@ -352,6 +352,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     ticketTypesTitle: "Bilet Növləri",
     standardTicket: "Standart",
     showAll: "Hamısına bax",
+    loadMore: "Daha çox",
     hide: "Gizlət",
     orderCustomer: "Müştəri",
     orderPromo: "Promo-kod",
@@ -378,6 +379,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     discountApplied: "Endirim tətbiq edildi!",
     scanToEnter: "Giriş üçün skan edin",
     ticketsDownloaded: "Biletləriniz PDF formatında yükləndi!",
+    downloadTicketsAgain: "Biletləri yenidən yüklə",
     salesPaused: "Satış dayandırılıb",
     salesPausedDesc: "Bu tədbir üçün bilet satışı müvəqqəti olaraq dayandırılmışdır.",
     tryAgain: "Yenidən cəhd et",
@@ -641,6 +643,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     ticketTypesTitle: "Типы билетов",
     standardTicket: "Стандартный",
     showAll: "Показать все",
+    loadMore: "Загрузить ещё",
     hide: "Скрыть",
     orderCustomer: "Покупатель",
     orderPromo: "Промокод",
@@ -667,6 +670,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     discountApplied: "Скидка применена!",
     scanToEnter: "Сканируйте для входа",
     ticketsDownloaded: "Ваши билеты загружены в PDF!",
+    downloadTicketsAgain: "Скачать билеты ещё раз",
     salesPaused: "Продажи остановлены",
     salesPausedDesc: "Продажа билетов на это мероприятие временно приостановлена.",
     tryAgain: "Попробовать снова",
@@ -931,6 +935,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     ticketTypesTitle: "Bilet Türleri",
     standardTicket: "Standart",
     showAll: "Tümünü gör",
+    loadMore: "Daha fazla",
     hide: "Gizle",
     orderCustomer: "Müşteri",
     orderPromo: "Promokod",
@@ -957,6 +962,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     discountApplied: "İndirim uygulandı!",
     scanToEnter: "Girmek için tarayın",
     ticketsDownloaded: "Biletleriniz PDF olarak indirildi!",
+    downloadTicketsAgain: "Biletleri tekrar indir",
     salesPaused: "Satışlar durduruldu",
     salesPausedDesc: "Bu etkinlik için bilet satışı geçici olarak durdurulmuştur.",
     tryAgain: "Tekrar dene",
@@ -1220,6 +1226,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     ticketTypesTitle: "Ticket Types",
     standardTicket: "Standard",
     showAll: "Show all",
+    loadMore: "Load more",
     hide: "Hide",
     orderCustomer: "Customer",
     orderPromo: "Promo code",
@@ -1246,6 +1253,7 @@ export const translations: Record<Locale, Record<string, string>> = {
     discountApplied: "Discount applied!",
     scanToEnter: "Scan to enter",
     ticketsDownloaded: "Your tickets have been downloaded as PDF!",
+    downloadTicketsAgain: "Download tickets again",
     salesPaused: "Sales paused",
     salesPausedDesc: "Ticket sales for this event have been temporarily paused.",
     tryAgain: "Try again",
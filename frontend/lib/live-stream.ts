@@ -0,0 +1,78 @@
+// SSE-подписка на дельты статистики (GET /events/{id}/stream, /events/stats/stream).
+// EventSource не умеет заголовок Authorization, поэтому читаем поток через fetch.
+
+const API_BASE  = process.env.NEXT_PUBLIC_API_URL ?? "http://localhost:8080"
+const TOKEN_KEY = "eticksystem_token"
+const RETRY_MS  = 3000
+
+export type StreamData = Record<string, unknown>
+
+/**
+ * Подписывается на поток и переподключается при обрыве.
+ * onResync вызывается после каждого переподключения — пропущенные дельты
+ * не восстановить, поэтому клиент заново берёт снимок статистики.
+ * Возвращает функцию отписки.
+ */
+export function subscribeStream(
+  path: string,
+  onEvent: (type: string, data: StreamData) => void,
+  onResync?: () => void,
+): () => void {
+  const controller = new AbortController()
+  let connected = false
+
+  const connect = async () => {
+    while (!controller.signal.aborted) {
+      try {
+        const token = localStorage.getItem(TOKEN_KEY)
+        if (!token) return
+        const res = await fetch(`${API_BASE}${path}`, {
+          headers: { Authorization: `Bearer ${token}`, Accept: "text/event-stream" },
+          signal: controller.signal,
+        })
+        if (res.status === 401 || res.status === 403) return
+        if (!res.ok || !res.body) throw new Error(`stream ${res.status}`)
+
+        if (connected) onResync?.()
+        connected = true
+
+        const reader  = res.body.getReader()
+        const decoder = new TextDecoder()
+        let buffer = ""
+        for (;;) {
+          const { value, done } = await reader.read()
+          if (done) break
+          buffer += decoder.decode(value, { stream: true })
+
+          let sep: number
+          while ((sep = buffer.indexOf("\n\n")) >= 0) {
+            const frame = buffer.slice(0, sep)
+            buffer = buffer.slice(sep + 2)
+            dispatch(frame, onEvent)
+          }
+        }
+      } catch (err) {
+        if ((err as Error).name === "AbortError") return
+      }
+      await new Promise((resolve) => setTimeout(resolve, RETRY_MS))
+    }
+  }
+
+  connect()
+  return () => controller.abort()
+}
+
+function dispatch(frame: string, onEvent: (type: string, data: StreamData) => void) {
+  let type = "message"
+  const data: string[] = []
+  for (const line of frame.split("\n")) {
+    if (line.startsWith("event:")) type = line.slice(6).trim()
+    else if (line.startsWith("data:")) data.push(line.slice(5).trimStart())
+  }
+  if (data.length === 0) return // комментарий-heartbeat
+  try {
+    onEvent(type, JSON.parse(data.join("\n")))
+  } catch {
+    // не JSON — пропускаем
+  }
+}
@@ -0,0 +1,28 @@
+// Места схемы зала приходят с бэкенда битовой маской (base64):
+// бит i — место в строке minRow + i / cols, колонке minCol + i % cols.
+export type SeatGridInfo = {
+  seatGridMinRow?: number | null
+  seatGridMinCol?: number | null
+  seatGridCols?: number | null
+}
+
+export function decodeSeatBits(bits: string | null | undefined, grid: SeatGridInfo): string[] {
+  if (!bits || !grid.seatGridCols) return []
+  const minRow = grid.seatGridMinRow ?? 0
+  const minCol = grid.seatGridMinCol ?? 0
+  const cols   = grid.seatGridCols
+
+  const raw  = atob(bits)
+  const keys: string[] = []
+  for (let byte = 0; byte < raw.length; byte++) {
+    const value = raw.charCodeAt(byte)
+    if (value === 0) continue
+    for (let bit = 0; bit < 8; bit++) {
+      if (value & (1 << bit)) {
+        const index = byte * 8 + bit
+        keys.push(`${minRow + Math.floor(index / cols)}_${minCol + (index % cols)}`)
+      }
+    }
+  }
+  return keys
+}